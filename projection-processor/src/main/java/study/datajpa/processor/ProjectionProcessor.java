@@ -0,0 +1,370 @@
+package study.datajpa.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//@GeneratedProjection 이 붙은 프로젝션마다 <이름>_Materializer 를 만든다.
+//인터페이스는 getter 를 필드로 갖는 구현 클래스를, 클래스(DTO)는 가장 인자가 많은 public 생성자 호출을 만들고
+//조회 결과 한 행(Object[])을 그대로 복사해 넣는다. 만든 materializer 는 ServiceLoader 파일에 모아서 등록한다
+@SupportedAnnotationTypes(ProjectionProcessor.ANNOTATION)
+public class ProjectionProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "study.datajpa.projection.GeneratedProjection";
+    static final String MATERIALIZER = "study.datajpa.projection.ProjectionMaterializer";
+    static final String SPEL_VALUE = "org.springframework.beans.factory.annotation.Value";
+
+    private final Set<String> materializers = new TreeSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                try {
+                    materializers.add(generate(type));
+                } catch (ProjectionException e) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+                } catch (IOException e) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "cannot write materializer: " + e.getMessage(), type);
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !materializers.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private String generate(TypeElement type) throws IOException {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1);
+        String className = simpleName.replace('.', '_') + "_Materializer";
+
+        List<Property> properties = properties(type, "");
+        List<String> columns = new ArrayList<>();
+        flatten(properties, columns);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(className)
+                .append(" implements ").append(MATERIALIZER).append("<").append(typeName).append("> {\n\n")
+                .append("    private static final java.util.List<String> PROPERTIES = java.util.List.of(")
+                .append(columns.stream().map(column -> "\"" + column + "\"").collect(Collectors.joining(", ")))
+                .append(");\n\n")
+                .append("    @Override\n")
+                .append("    public Class<").append(typeName).append("> projectionType() {\n")
+                .append("        return ").append(typeName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public java.util.List<String> properties() {\n")
+                .append("        return PROPERTIES;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public ").append(typeName).append(" materialize(Object[] row) {\n")
+                .append("        return ").append(construct(type, "Impl", properties, new int[]{0})).append(";\n")
+                .append("    }\n");
+        if (type.getKind() == ElementKind.INTERFACE) {
+            appendImpl(source, typeName, "Impl", properties);
+        }
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        JavaFileObject file = filer.createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+        return qualifiedName;
+    }
+
+    //인터페이스는 getter, 클래스는 생성자 인자. 반환 타입이 (java.* 가 아닌) 인터페이스인 getter 는 중첩 프로젝션
+    private List<Property> properties(TypeElement type, String prefix) {
+        List<Property> properties = new ArrayList<>();
+        if (type.getKind() == ElementKind.INTERFACE) {
+            for (ExecutableElement getter : getters(type).values()) {
+                if (hasAnnotation(getter, SPEL_VALUE)) {
+                    throw new ProjectionException("open projections (@Value) cannot be generated", getter);
+                }
+                String name = propertyName(getter);
+                TypeMirror returnType = getter.getReturnType();
+                TypeElement nested = nestedProjection(returnType);
+                properties.add(new Property(name, prefix + name, getter.getSimpleName().toString(), returnType,
+                        nested, nested == null ? null : properties(nested, prefix + name + ".")));
+            }
+        } else if (type.getKind() == ElementKind.CLASS) {
+            ExecutableElement constructor = constructor(type);
+            for (VariableElement parameter : constructor.getParameters()) {
+                String name = parameter.getSimpleName().toString();
+                properties.add(new Property(name, prefix + name, null, parameter.asType(), null, null));
+            }
+        } else {
+            throw new ProjectionException("@GeneratedProjection is only supported on interfaces and classes", type);
+        }
+        if (properties.isEmpty()) {
+            throw new ProjectionException("projection has no properties", type);
+        }
+        return properties;
+    }
+
+    //상위 인터페이스의 getter 먼저, 같은 이름은 한 번만
+    private Map<String, ExecutableElement> getters(TypeElement type) {
+        Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+        for (TypeMirror superInterface : type.getInterfaces()) {
+            getters.putAll(getters((TypeElement) types.asElement(superInterface)));
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.DEFAULT)) {
+                continue;
+            }
+            if (!method.getParameters().isEmpty() || propertyName(method) == null) {
+                throw new ProjectionException("projection methods must be getters without parameters", method);
+            }
+            getters.put(method.getSimpleName().toString(), method);
+        }
+        return getters;
+    }
+
+    private ExecutableElement constructor(TypeElement type) {
+        ExecutableElement selected = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC)
+                    && (selected == null || constructor.getParameters().size() > selected.getParameters().size())) {
+                selected = constructor;
+            }
+        }
+        if (selected == null || selected.getParameters().isEmpty()) {
+            throw new ProjectionException("class projections need a public constructor with parameters", type);
+        }
+        return selected;
+    }
+
+    private TypeElement nestedProjection(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        PackageElement packageElement = elements.getPackageOf(element);
+        if (element.getKind() != ElementKind.INTERFACE || packageElement.getQualifiedName().toString().startsWith("java.")) {
+            return null;
+        }
+        return element;
+    }
+
+    private static String propertyName(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    //java.beans.Introspector.decapitalize 와 같은 규칙 (URL -> URL, Name -> name)
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static void flatten(List<Property> properties, List<String> columns) {
+        for (Property property : properties) {
+            if (property.nested == null) {
+                columns.add(property.path);
+            } else {
+                flatten(property.children, columns);
+            }
+        }
+    }
+
+    //row 에서 값을 꺼내 구현(또는 DTO 생성자)에 넘기는 식. index 는 다음에 읽을 컬럼
+    private String construct(TypeElement type, String implName, List<Property> properties, int[] index) {
+        List<String> arguments = new ArrayList<>();
+        for (Property property : properties) {
+            if (property.nested == null) {
+                arguments.add(convert(property.type, "row[" + index[0]++ + "]"));
+                continue;
+            }
+            //left join 으로 연관 엔티티가 없으면 컬럼이 전부 null -> 중첩 프로젝션도 null
+            int from = index[0];
+            String value = construct(property.nested, implName + "_" + property.name, property.children, index);
+            String allNull = IntStream.range(from, index[0])
+                    .mapToObj(i -> "row[" + i + "] == null")
+                    .collect(Collectors.joining(" && "));
+            arguments.add("(" + allNull + " ? null : " + value + ")");
+        }
+        String target = type.getKind() == ElementKind.INTERFACE ? implName : type.getQualifiedName().toString();
+        return "new " + target + "(" + String.join(", ", arguments) + ")";
+    }
+
+    private String convert(TypeMirror type, String value) {
+        switch (type.getKind()) {
+            case INT:
+            case LONG:
+            case SHORT:
+            case BYTE:
+            case DOUBLE:
+            case FLOAT:
+                return "((Number) " + value + ")." + type + "Value()";
+            case BOOLEAN:
+                return "(Boolean) " + value;
+            case CHAR:
+                return "(Character) " + value;
+            default:
+                break;
+        }
+        //네이티브 쿼리는 BIGINT -> Long, INTEGER -> Integer 처럼 DB 타입을 따르므로 숫자 래퍼는 Number 로 받아 바꾼다
+        try {
+            TypeMirror unboxed = types.unboxedType(type);
+            if (unboxed.getKind() != TypeKind.BOOLEAN && unboxed.getKind() != TypeKind.CHAR) {
+                return "(" + value + " == null ? null : " + types.boxedClass(types.getPrimitiveType(unboxed.getKind())).getSimpleName()
+                        + ".valueOf(((Number) " + value + ")." + unboxed + "Value()))";
+            }
+        } catch (IllegalArgumentException notBoxed) {
+            //래퍼 타입이 아니면 그대로 캐스트
+        }
+        return "(" + type + ") " + value;
+    }
+
+    private void appendImpl(StringBuilder source, String interfaceName, String implName, List<Property> properties) {
+        source.append("\n    private static final class ").append(implName).append(" implements ").append(interfaceName).append(" {\n\n");
+        for (Property property : properties) {
+            source.append("        private final ").append(property.type).append(" ").append(property.name).append(";\n");
+        }
+        source.append("\n        private ").append(implName).append("(")
+                .append(properties.stream().map(p -> p.type + " " + p.name).collect(Collectors.joining(", ")))
+                .append(") {\n");
+        for (Property property : properties) {
+            source.append("            this.").append(property.name).append(" = ").append(property.name).append(";\n");
+        }
+        source.append("        }\n");
+        for (Property property : properties) {
+            source.append("\n        @Override\n")
+                    .append("        public ").append(property.type).append(" ").append(property.getter).append("() {\n")
+                    .append("            return ").append(property.name).append(";\n")
+                    .append("        }\n");
+        }
+        source.append("\n        @Override\n")
+                .append("        public String toString() {\n")
+                .append("            return \"").append(interfaceName.substring(interfaceName.lastIndexOf('.') + 1)).append("{")
+                .append(properties.stream().map(p -> p.name + "=\" + " + p.name + " + \"").collect(Collectors.joining(", ")))
+                .append("}\";\n")
+                .append("        }\n")
+                .append("    }\n");
+
+        for (Property property : properties) {
+            if (property.nested != null) {
+                appendImpl(source, property.nested.getQualifiedName().toString(), implName + "_" + property.name, property.children);
+            }
+        }
+    }
+
+    private void writeServiceFile() {
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + MATERIALIZER);
+            try (Writer writer = file.openWriter()) {
+                for (String materializer : materializers) {
+                    writer.write(materializer);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "cannot write " + MATERIALIZER + " service file: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Property {
+
+        private final String name;
+        private final String path;
+        private final String getter;
+        private final TypeMirror type;
+        private final TypeElement nested;
+        private final List<Property> children;
+
+        Property(String name, String path, String getter, TypeMirror type, TypeElement nested, List<Property> children) {
+            this.name = name;
+            this.path = path;
+            this.getter = getter;
+            this.type = type;
+            this.nested = nested;
+            this.children = children;
+        }
+    }
+
+    private static class ProjectionException extends RuntimeException {
+
+        private final Element element;
+
+        ProjectionException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
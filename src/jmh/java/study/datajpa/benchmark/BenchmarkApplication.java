@@ -0,0 +1,26 @@
+package study.datajpa.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa.DataJpaApplication;
+
+//벤치마크용 애플리케이션. in-memory H2, SQL 로그 끔, 스케줄 작업 끔, SqlStatementCounter 등록
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("sqlStatementCounter", new SqlStatementCounter()))
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "datajpa.scheduling.enabled=false")
+                .run();
+    }
+}
@@ -0,0 +1,177 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.NestedClosedProjections;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.UsernameOnly;
+import study.datajpa.repository.UsernameOnlyDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+//회원 + 팀 조회 방식별 처리량. ./gradlew jmh 로 실행 (gc 프로파일러로 할당량도 같이 나온다)
+//in-memory H2 에 members 명(팀은 10명당 하나)을 넣고 시작한다
+//sqlStatements 는 벤치마크 스레드가 실행한 초당 JDBC 문장 수라서 원래 점수(ops/s)로 나누면 한 번 조회에 나가는 SQL 수다
+@State(Scope.Benchmark)
+public class MemberFetchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate readOnly;
+    SqlStatementCounter sqlCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+
+        memberRepository = context.getBean(MemberRepository.class);
+        sqlCounter = context.getBean(SqlStatementCounter.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, members / 10); i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, members)
+                .mapToObj(i -> new Member("member" + i, i % 100, teams.get(i % teams.size())))
+                .iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SqlCount {
+
+        public long sqlStatements;
+    }
+
+    //지연 로딩. team 접근 시 프록시 초기화 (batch fetch 설정이 적용된 상태)
+    @Benchmark
+    public void lazyLoading(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> touchTeams(memberRepository.findMemberCustom(), blackhole));
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> touchTeams(memberRepository.findMemberFetchJoin(), blackhole));
+    }
+
+    @Benchmark
+    public void entityGraphQuery(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> touchTeams(memberRepository.findMemberEntityGraph(), blackhole));
+    }
+
+    @Benchmark
+    public void entityGraphFindAll(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> touchTeams(memberRepository.findAll(), blackhole));
+    }
+
+    @Benchmark
+    public void entityGraphByUsername(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> touchTeams(memberRepository.findEntityGraphByUsername("member0"), blackhole));
+    }
+
+    @Benchmark
+    public void dtoProjection(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            blackhole.consume(memberRepository.findMemberDto());
+            return null;
+        });
+    }
+
+    //*Generated: @GeneratedProjection 타입이라 findProjectionsByUsername 이 생성된 구현에 바로 담는다 (프록시 없음)
+    //*Proxy: 같은 타입을 스프링 데이터 동적 프로젝션(findDynamicProjectionsByUsername)으로 조회
+    @Benchmark
+    public void interfaceProjectionGenerated(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findProjectionsByUsername("member0", UsernameOnly.class)
+                    .forEach(projection -> blackhole.consume(projection.getUsername()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void interfaceProjectionProxy(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findDynamicProjectionsByUsername("member0", UsernameOnly.class)
+                    .forEach(projection -> blackhole.consume(projection.getUsername()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void classProjectionGenerated(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findProjectionsByUsername("member0", UsernameOnlyDto.class)
+                    .forEach(projection -> blackhole.consume(projection.getUsername()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void classProjectionProxy(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findDynamicProjectionsByUsername("member0", UsernameOnlyDto.class)
+                    .forEach(projection -> blackhole.consume(projection.getUsername()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void nestedProjectionGenerated(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findProjectionsByUsername("member0", NestedClosedProjections.class)
+                    .forEach(projection -> blackhole.consume(projection.getTeam().getName()));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void nestedProjectionProxy(Blackhole blackhole, SqlCount sqlCount) {
+        run(sqlCount, () -> {
+            memberRepository.findDynamicProjectionsByUsername("member0", NestedClosedProjections.class)
+                    .forEach(projection -> blackhole.consume(projection.getTeam().getName()));
+            return null;
+        });
+    }
+
+    //조회와 team 초기화를 한 트랜잭션(영속성 컨텍스트) 안에서 하고, 그 사이 나간 SQL 수를 더한다
+    private void run(SqlCount sqlCount, Supplier<?> work) {
+        long before = sqlCounter.count();
+        readOnly.execute(status -> work.get());
+        sqlCount.sqlStatements += sqlCounter.count() - before;
+    }
+
+    private static Void touchTeams(List<Member> members, Blackhole blackhole) {
+        for (Member member : members) {
+            Team team = member.getTeam();
+            blackhole.consume(team == null ? null : team.getName());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberFilter;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+//username(DB, 캐시) / username + age / in 절 / 팀 이름 조인 조회의 평균 지연 시간. indexed=false 는 시딩 후 인덱스를 지운 상태
+//./gradlew jmh -Pjmh.includes=MemberLookupBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberLookupBenchmark {
+
+    private static final int TEAMS = 10_000;
+
+    @Param({"1000000"})
+    int members;
+
+    @Param({"true", "false"})
+    boolean indexed;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    List<String> names;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        memberRepository = context.getBean(MemberRepository.class);
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, members)
+                .mapToObj(i -> new Member("member" + i, i % 100, teams.get(i % TEAMS)))
+                .iterator());
+
+        if (!indexed) {
+            //idx_member_team_id 는 외래 키가 쓰고 있어서 남긴다
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.execute("drop index idx_member_username_age");
+            jdbcTemplate.execute("drop index idx_team_name");
+        }
+
+        names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("member" + i * (members / 10));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void findByUsername(Blackhole blackhole) {
+        blackhole.consume(memberRepository.findByUsername(nextUsername()));
+    }
+
+    //같은 10 명을 돌려 읽으므로 첫 호출 뒤에는 MemberUsernameCache 에서 답한다
+    @Benchmark
+    public void findCachedByUsername(Blackhole blackhole) {
+        blackhole.consume(memberRepository.findCachedByUsername(names.get(next++ % names.size())));
+    }
+
+    @Benchmark
+    public void findByUsernameAndAgeGreaterThan(Blackhole blackhole) {
+        blackhole.consume(memberRepository.findByUsernameAndAgeGreaterThan(nextUsername(), 10));
+    }
+
+    @Benchmark
+    public void findByNames(Blackhole blackhole) {
+        blackhole.consume(memberRepository.findByNames(names));
+    }
+
+    @Benchmark
+    public void teamName(Blackhole blackhole) {
+        blackhole.consume(memberRepository.search(MemberFilter.create().teamName("team" + next++ % TEAMS)));
+    }
+
+    private String nextUsername() {
+        return "member" + next++ % members;
+    }
+}
@@ -0,0 +1,94 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberFilter;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.MemberSpec;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+//MemberSpec(Criteria) 과 MemberFilter(미리 만든 JPQL) 비교. ./gradlew jmh -Pjmh.includes=MemberSpecBenchmark
+//*Build 는 쿼리 객체를 만드는 데까지(Criteria 트리 + 렌더링/파싱 vs 캐시된 JPQL + 바인딩), *Execute 는 리포지토리로 실제 조회
+//바인드 값은 호출마다 바꾼다
+@State(Scope.Benchmark)
+public class MemberSpecBenchmark {
+
+    private static final int MEMBERS = 1000;
+    private static final int TEAMS = 100;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    EntityManager em;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        memberRepository = context.getBean(MemberRepository.class);
+        em = context.getBean(EntityManagerFactory.class).createEntityManager();
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, MEMBERS)
+                .mapToObj(i -> new Member("member" + i, i % 100, teams.get(i % TEAMS)))
+                .iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void criteriaBuild(Blackhole blackhole) {
+        int i = next++ % MEMBERS;
+        Specification<Member> specification = MemberSpec.username("member" + i).and(MemberSpec.teamName("team" + i % TEAMS));
+
+        //SimpleJpaRepository.getQuery 와 같은 순서
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Member> query = builder.createQuery(Member.class);
+        Root<Member> root = query.from(Member.class);
+        query.where(specification.toPredicate(root, query, builder));
+        blackhole.consume(em.createQuery(query));
+    }
+
+    @Benchmark
+    public void compiledBuild(Blackhole blackhole) {
+        int i = next++ % MEMBERS;
+        blackhole.consume(MemberFilter.create().username("member" + i).teamName("team" + i % TEAMS).createQuery(em));
+    }
+
+    @Benchmark
+    public void criteriaExecute(Blackhole blackhole) {
+        int i = next++ % MEMBERS;
+        blackhole.consume(memberRepository.findAll(MemberSpec.username("member" + i).and(MemberSpec.teamName("team" + i % TEAMS))));
+    }
+
+    @Benchmark
+    public void compiledExecute(Blackhole blackhole) {
+        int i = next++ % MEMBERS;
+        blackhole.consume(memberRepository.search(MemberFilter.create().username("member" + i).teamName("team" + i % TEAMS)));
+    }
+}
@@ -0,0 +1,162 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.projection.ProjectionMaterializer;
+import study.datajpa.projection.ProjectionMaterializers;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.NestedClosedProjections;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.UsernameOnly;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+//생성된 프로젝션 구현(ProjectionMaterializer) 과 Spring Data 프록시 프로젝션 비교. ./gradlew jmh -Pjmh.includes=ProjectionBenchmark
+//회원 rows 명이 모두 같은 username 이라 한 번 조회에 rows 개 프로젝션을 만든다. 할당량은 gc 프로파일러(gc.alloc.rate.norm)
+//map*: DB 없이 미리 읽어 둔 행을 프로젝션으로 바꾸고 getter 를 읽는 데까지. 프록시 쪽은 행을 Map 으로 미리 만들어 둬서 TupleBackedMap 비용은 빠진다
+//query*: 리포지토리 조회 전체. 프록시 쪽은 Spring Data 가 하던 것과 같이 닫힌 프로젝션은 Tuple -> Map, 중첩은 엔티티를 감싼다
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    private static final String USERNAME = "member";
+
+    @Param({"100000"})
+    int rows;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    TransactionTemplate readOnly;
+    EntityManager em;
+    ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    ProjectionMaterializer<UsernameOnly> usernameOnly;
+    ProjectionMaterializer<NestedClosedProjections> nested;
+    List<Object[]> usernameRows = new ArrayList<>();
+    List<Object[]> nestedRows = new ArrayList<>();
+    List<Map<String, Object>> usernameMaps = new ArrayList<>();
+    List<Map<String, Object>> nestedMaps = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        memberRepository = context.getBean(MemberRepository.class);
+        em = context.getBean(EntityManager.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            teams.add(new Team("team" + i));
+        }
+        context.getBean(TeamRepository.class).saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, rows)
+                .mapToObj(i -> new Member(USERNAME, i % 100, teams.get(i % teams.size())))
+                .iterator());
+
+        ProjectionMaterializers materializers = context.getBean(ProjectionMaterializers.class);
+        usernameOnly = materializers.find(UsernameOnly.class).orElseThrow();
+        nested = materializers.find(NestedClosedProjections.class).orElseThrow();
+        for (int i = 0; i < rows; i++) {
+            String teamName = "team" + i % teams.size();
+            usernameRows.add(new Object[]{USERNAME});
+            nestedRows.add(new Object[]{USERNAME, teamName});
+            usernameMaps.add(Map.of("username", USERNAME));
+            nestedMaps.add(Map.of("username", USERNAME, "team", Map.of("name", teamName)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void mapUsernameOnlyGenerated(Blackhole blackhole) {
+        for (Object[] row : usernameRows) {
+            blackhole.consume(usernameOnly.materialize(row).getUsername());
+        }
+    }
+
+    @Benchmark
+    public void mapUsernameOnlyProxy(Blackhole blackhole) {
+        for (Map<String, Object> row : usernameMaps) {
+            blackhole.consume(projectionFactory.createProjection(UsernameOnly.class, row).getUsername());
+        }
+    }
+
+    @Benchmark
+    public void mapNestedGenerated(Blackhole blackhole) {
+        for (Object[] row : nestedRows) {
+            NestedClosedProjections projection = nested.materialize(row);
+            blackhole.consume(projection.getUsername());
+            blackhole.consume(projection.getTeam().getName());
+        }
+    }
+
+    @Benchmark
+    public void mapNestedProxy(Blackhole blackhole) {
+        for (Map<String, Object> row : nestedMaps) {
+            NestedClosedProjections projection = projectionFactory.createProjection(NestedClosedProjections.class, row);
+            blackhole.consume(projection.getUsername());
+            blackhole.consume(projection.getTeam().getName());
+        }
+    }
+
+    @Benchmark
+    public void queryUsernameOnlyGenerated(Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> memberRepository.findProjectionsByUsername(USERNAME, UsernameOnly.class)
+                .forEach(projection -> blackhole.consume(projection.getUsername())));
+    }
+
+    @Benchmark
+    public void queryUsernameOnlyProxy(Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> em.createQuery("select m.username as username from Member m where m.username = :username", Tuple.class)
+                .setParameter("username", USERNAME)
+                .getResultStream()
+                .map(tuple -> projectionFactory.createProjection(UsernameOnly.class, Map.of("username", tuple.get("username"))))
+                .forEach(projection -> blackhole.consume(projection.getUsername())));
+    }
+
+    @Benchmark
+    public void queryNestedGenerated(Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> memberRepository.findProjectionsByUsername(USERNAME, NestedClosedProjections.class)
+                .forEach(projection -> {
+                    blackhole.consume(projection.getUsername());
+                    blackhole.consume(projection.getTeam().getName());
+                }));
+    }
+
+    //fetch join 으로 팀까지 한 번에 읽어서 프록시 비용과 엔티티 로딩만 남긴다 (batch fetch 쿼리는 빼고 비교)
+    @Benchmark
+    public void queryNestedProxy(Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m left join fetch m.team where m.username = :username", Member.class)
+                    .setParameter("username", USERNAME)
+                    .getResultStream()
+                    .map(member -> projectionFactory.createProjection(NestedClosedProjections.class, member))
+                    .forEach(projection -> {
+                        blackhole.consume(projection.getUsername());
+                        blackhole.consume(projection.getTeam().getName());
+                    });
+            em.clear();
+        });
+    }
+}
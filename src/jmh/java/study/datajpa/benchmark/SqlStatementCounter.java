@@ -0,0 +1,22 @@
+package study.datajpa.benchmark;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+//p6spy 스타터가 빈으로 등록된 JdbcEventListener 를 찾아서 붙여준다. 실행된 JDBC 문장 수를 스레드별로 센다.
+//count() 는 부른 스레드의 수라서 다른 스레드(스케줄 작업 등)의 문장은 벤치마크 스레드의 SQL 수에 섞이지 않는다
+public class SqlStatementCounter extends SimpleJdbcEventListener {
+
+    private final ThreadLocal<long[]> statements = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        statements.get()[0]++;
+    }
+
+    public long count() {
+        return statements.get()[0];
+    }
+}
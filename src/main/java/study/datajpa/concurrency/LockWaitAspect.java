@@ -0,0 +1,33 @@
+package study.datajpa.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Component;
+
+//@Lock 쿼리 메서드(findLockByUsername 등)의 실행 시간. select ... for update 는 다른 트랜잭션이 락을 놓을 때까지 기다리므로
+//대부분이 락 대기 시간이다 (datajpa.lock.wait)
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class LockWaitAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("@annotation(lock)")
+    public Object timeLock(ProceedingJoinPoint joinPoint, Lock lock) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            sample.stop(Timer.builder("datajpa.lock.wait")
+                    .tag("method", joinPoint.getSignature().toShortString())
+                    .tag("mode", lock.value().name())
+                    .register(meterRegistry));
+        }
+    }
+}
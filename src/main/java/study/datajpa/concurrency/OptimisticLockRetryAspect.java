@@ -0,0 +1,67 @@
+package study.datajpa.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+//@RetryOnOptimisticLock 메서드를 트랜잭션 프록시보다 바깥에서 감싸서, 충돌로 롤백되면 새 트랜잭션으로 다시 실행한다
+//datajpa.optimistic.conflicts : 충돌 횟수, datajpa.optimistic.retries : 재시도 횟수, datajpa.optimistic.exhausted : 재시도를 다 쓰고 실패
+@Slf4j
+@Aspect
+@Component
+//RepositoryMetricsAspect 바로 안쪽이라 재시도까지 합친 시간이 한 번의 호출로 기록된다
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class OptimisticLockRetryAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnOptimisticLock retry) throws Throwable {
+        String method = joinPoint.getSignature().toShortString();
+
+        //바깥 트랜잭션이 있으면 롤백 전용이 된 그 트랜잭션 안에서 다시 시도해도 소용없다
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                counter("datajpa.optimistic.conflicts", method).increment();
+                if (attempt >= retry.maxAttempts()) {
+                    counter("datajpa.optimistic.exhausted", method).increment();
+                    throw e;
+                }
+                counter("datajpa.optimistic.retries", method).increment();
+                log.debug("optimistic lock conflict on {} (attempt {}), retrying", method, attempt);
+                Thread.sleep(backoff(retry.backoff(), attempt));
+            }
+        }
+    }
+
+    //backoff * 2^(attempt-1) 을 0.5 ~ 1.5 배로 흔들어서 같이 충돌한 스레드들이 다시 같은 순간에 몰리지 않게 한다
+    private static long backoff(long base, int attempt) {
+        long delay = base << Math.min(attempt - 1, 10);
+        return (long) (delay * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+    }
+
+    private Counter counter(String name, String method) {
+        return Counter.builder(name)
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package study.datajpa.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//@Version 충돌(OptimisticLockException)이 나면 트랜잭션을 처음부터 다시 실행한다.
+//재시도는 트랜잭션 바깥에서 해야 하므로 이미 트랜잭션 안에서 호출되면 재시도하지 않고 예외를 그대로 던진다
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnOptimisticLock {
+
+    //첫 시도를 포함한 최대 실행 횟수
+    int maxAttempts() default 5;
+
+    //첫 재시도 전 대기(ms). 재시도마다 두 배로 늘리고 jitter 를 준다
+    long backoff() default 10;
+}
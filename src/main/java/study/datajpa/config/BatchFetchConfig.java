@@ -0,0 +1,59 @@
+package study.datajpa.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Map;
+
+//datajpa.batch-fetch.sizes 로 연관관계별 batch size 를 바꾼다.
+//어노테이션 값은 상수라서, 매핑 정보(Metadata)로 persister 가 만들어지기 전에 Integrator 에서 덮어쓴다
+@Configuration
+@EnableConfigurationProperties(BatchFetchProperties.class)
+public class BatchFetchConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer batchFetchSizeCustomizer(BatchFetchProperties properties) {
+        Integrator integrator = new BatchFetchSizeIntegrator(Map.copyOf(properties.getSizes()));
+        return hibernateProperties -> hibernateProperties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(integrator));
+    }
+
+    @RequiredArgsConstructor
+    static class BatchFetchSizeIntegrator implements Integrator {
+
+        private final Map<String, Integer> sizes;
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            sizes.forEach((role, size) -> {
+                PersistentClass entity = metadata.getEntityBinding(role);
+                if (entity != null) {
+                    entity.setBatchSize(size);
+                    return;
+                }
+                Collection collection = metadata.getCollectionBinding(role);
+                if (collection != null) {
+                    collection.setBatchSize(size);
+                    return;
+                }
+                throw new IllegalArgumentException("unknown entity or collection role in datajpa.batch-fetch.sizes: " + role);
+            });
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("datajpa.batch-fetch")
+public class BatchFetchProperties {
+
+    //엔티티 이름 또는 컬렉션 role -> batch size
+    private Map<String, Integer> sizes = new LinkedHashMap<>();
+}
@@ -0,0 +1,49 @@
+package study.datajpa.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.List;
+
+//Hibernate 2차 캐시(JCache/Caffeine). 리전 크기와 만료는 application.conf
+@Configuration
+public class CacheConfig {
+
+    public static final String TEAM_REGION = "study.datajpa.entity.Team";
+    public static final String TEAM_MEMBERS_REGION = "study.datajpa.entity.Team.members";
+
+    private static final List<String> REGIONS = List.of(TEAM_REGION, TEAM_MEMBERS_REGION);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager jcacheManager() {
+        return Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer jcacheManagerCustomizer(CacheManager jcacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, jcacheManager);
+    }
+
+    //리전별 hit/miss/put/eviction (cache.gets, cache.evictions ...). hibernate.second.level.cache.* 는 스프링 부트가 등록
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager jcacheManager) {
+        return registry -> {
+            for (String region : REGIONS) {
+                Cache<Object, Object> cache = jcacheManager.getCache(region);
+                if (cache != null) {
+                    JCacheMetrics.monitor(registry, cache, Tags.of("region", region));
+                }
+            }
+        };
+    }
+}
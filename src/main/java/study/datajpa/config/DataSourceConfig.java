@@ -0,0 +1,65 @@
+package study.datajpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.datajpa.datasource.DataSourcePools;
+import study.datajpa.datasource.ReadWriteRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+//spring.datasource 는 primary, datajpa.datasource.replicas 는 readOnly 트랜잭션용 복제본.
+//풀 사용량은 hikaricp.connections{pool=primary|replica-N}
+@Configuration
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceConfig {
+
+    //primary 풀에는 스프링 부트의 Hikari 자동 설정과 같게 spring.datasource.hikari.* 를 바인딩한다 (maximum-pool-size 등)
+    @Bean(destroyMethod = "close")
+    public DataSourcePools dataSourcePools(DataSourceProperties dataSourceProperties,
+                                           DataSourceRoutingProperties routingProperties,
+                                           Environment environment,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        //hikaricp.connections{pool=primary} 태그가 바뀌지 않도록 pool-name 은 덮어쓴다
+        primary.setPoolName("primary");
+        meterRegistry.ifAvailable(primary::setMetricRegistry);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (DataSourceRoutingProperties.Replica properties : routingProperties.getReplicas()) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.getUrl())
+                    .username(properties.getUsername())
+                    .password(properties.getPassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setMaximumPoolSize(properties.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            meterRegistry.ifAvailable(replica::setMetricRegistry);
+            replicas.add(replica);
+        }
+        return new DataSourcePools(primary, replicas);
+    }
+
+    //트랜잭션이 시작될 때가 아니라 첫 SQL 을 실행할 때 커넥션을 얻어야 readOnly 여부로 라우팅할 수 있다
+    @Bean
+    public DataSource dataSource(DataSourcePools dataSourcePools, DataSourceRoutingProperties routingProperties) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(dataSourcePools, routingProperties.getReadYourWritesWindow()));
+    }
+}
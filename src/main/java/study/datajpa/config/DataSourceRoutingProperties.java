@@ -0,0 +1,31 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties("datajpa.datasource")
+public class DataSourceRoutingProperties {
+
+    //readOnly 트랜잭션을 보낼 복제본. 비어 있으면 전부 spring.datasource(primary)로 간다
+    private List<Replica> replicas = new ArrayList<>();
+
+    //DML 을 실행한 트랜잭션을 커밋한 스레드는 이 시간 동안 readOnly 트랜잭션도 primary 에서 읽는다 (복제 지연 동안 자기가 쓴 값을 못 보는 일 방지).
+    //스레드 단위이고 요청이 시작될 때 지워지므로 같은 요청(과 그 요청의 AsyncMemberRepository 작업) 안에서만 보장된다
+    private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
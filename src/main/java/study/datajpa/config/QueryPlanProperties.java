@@ -0,0 +1,31 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("datajpa.query-plan")
+public class QueryPlanProperties {
+
+    public enum Mode {
+        //시작할 때 분석하지 않는다 (QueryPlanAnalyzer.analyze() 를 직접 부를 수는 있다)
+        OFF,
+        //시작할 때 분석해서 경고 로그
+        LOG,
+        //발견된 것이 있으면 애플리케이션 시작을 실패시킨다
+        FAIL
+    }
+
+    private Mode mode = Mode.OFF;
+
+    //풀 스캔하는 테이블들의 추정 행 수(곱)가 이보다 크면 보고한다
+    private long maxScannedRows = 100_000;
+
+    //알고 받아들인 쿼리. "MemberRepository.bulkAgePlus" 처럼 리포지토리.메서드 또는 named query 이름 -> 이유
+    private Map<String, String> ignore = new LinkedHashMap<>();
+}
@@ -0,0 +1,13 @@
+package study.datajpa.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//@Scheduled 작업(RowCounters.flush). 테스트는 src/test/resources/config/application.yml 에서 꺼서
+//백그라운드 SQL 이 공유 H2 와 SQL 수 측정에 섞이지 않게 한다
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "datajpa.scheduling.enabled", matchIfMissing = true)
+public class SchedulingConfig {
+}
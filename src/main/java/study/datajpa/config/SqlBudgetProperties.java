@@ -0,0 +1,33 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties("datajpa.sql-budget")
+public class SqlBudgetProperties {
+
+    public enum Mode {
+        //넘으면 요청이 끝난 뒤 경고 로그
+        LOG,
+        //넘는 순간 다음 SQL 을 실행하지 않고 요청을 실패시킨다
+        REJECT
+    }
+
+    private Mode mode = Mode.LOG;
+
+    //limits 에 없는 엔드포인트의 한 요청당 SQL 수. 0 이하면 제한 없음
+    private int defaultLimit = 0;
+
+    //"GET /members/{id}" 처럼 메서드 + 매핑 패턴 -> 한 요청당 SQL 수
+    private Map<String, Integer> limits = new LinkedHashMap<>();
+
+    public int limitFor(String endpoint) {
+        return limits.getOrDefault(endpoint, defaultLimit);
+    }
+}
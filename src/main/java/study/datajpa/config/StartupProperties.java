@@ -0,0 +1,14 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties("datajpa.startup")
+public class StartupProperties {
+
+    //true 면 ddl-auto 대신 SchemaFingerprint 가 none / validate / create 중 하나를 고른다
+    private boolean skipValidatedSchema = false;
+}
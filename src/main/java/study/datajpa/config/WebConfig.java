@@ -0,0 +1,32 @@
+package study.datajpa.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.datajpa.web.MemberSnapshotConverter;
+import study.datajpa.web.ReadYourWritesInterceptor;
+import study.datajpa.web.SqlBudgetInterceptor;
+
+@Configuration
+@RequiredArgsConstructor
+@EnableConfigurationProperties(SqlBudgetProperties.class)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final SqlBudgetInterceptor sqlBudgetInterceptor;
+    private final ReadYourWritesInterceptor readYourWritesInterceptor;
+    private final MemberSnapshotConverter memberSnapshotConverter;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sqlBudgetInterceptor);
+        registry.addInterceptor(readYourWritesInterceptor);
+    }
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(memberSnapshotConverter);
+    }
+}
@@ -1,44 +1,174 @@
 package study.datajpa.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.dto.MemberWindowDto;
 import study.datajpa.entity.Member;
+import study.datajpa.repository.AsyncMemberRepository;
+import study.datajpa.repository.MemberCursor;
+import study.datajpa.repository.MemberIdCache;
 import study.datajpa.repository.MemberRepository;
 
 import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final MemberRepository memberRepository;
+    private final AsyncMemberRepository asyncMemberRepository;
+    private final MemberIdCache memberIdCache;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    //false 면 엔티티로 조회한 뒤 MemberDto 로 변환한다 (비교용)
+    @Value("${datajpa.members.projection:true}")
+    private boolean projection;
 
     @GetMapping("/members/{id}")
     public String findMember(@PathVariable("id") Long id){
-        Member member = memberRepository.findById(id).get();
+        MemberSnapshot member = memberIdCache.findById(id).orElseThrow(() -> notFound(id));
         return member.getUsername();
     }
 
+    //MemberSnapshotConverter 가 MemberIdCache 로 채운다. 없는 id 면 empty
     @GetMapping("/members2/{id}")
-    public String findMember2(@PathVariable("id") Member member){
-        return member.getUsername();
+    public String findMember2(@PathVariable("id") Optional<MemberSnapshot> member){
+        return member.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "member not found")).getUsername();
     }
 
     @GetMapping("/members")
     public Page<MemberDto> List(@PageableDefault(size = 10)Pageable pageable){
+        if (projection) {
+            return memberRepository.findMemberDtoPage(pageable);
+        }
         return memberRepository.findAll(pageable)
                 .map(MemberDto::new);
 
 
     }
 
+    //조회는 AsyncMemberRepository 스레드에서 하고 서블릿 스레드는 바로 돌려준다
+    @GetMapping("/async/members/{id}")
+    public CompletableFuture<String> findMemberAsync(@PathVariable("id") Long id) {
+        return asyncMemberRepository.findMemberDto(id)
+                .thenApply(member -> member.orElseThrow(() -> notFound(id)).getUsername());
+    }
+
+    @GetMapping("/async/members")
+    public CompletableFuture<Page<MemberDto>> listAsync(@PageableDefault(size = 10) Pageable pageable) {
+        return asyncMemberRepository.findMemberDtoPage(pageable);
+    }
+
+    //AsyncMemberRepository 가 꽉 찼거나 너무 오래 기다린 요청
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> repositoryBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    //keyset 페이징. count 쿼리 없이 next 토큰으로 다음 페이지를 조회
+    @GetMapping("/members/keyset")
+    public MemberWindowDto keyset(@RequestParam(value = "cursor", required = false) String token,
+                                  @RequestParam(value = "sort", defaultValue = "username") String sort,
+                                  @RequestParam(value = "size", defaultValue = "10") int size) {
+        if (size < 1 || size > 2000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and 2000");
+        }
+
+        MemberCursor cursor;
+        try {
+            cursor = token == null
+                    ? MemberCursor.first(MemberCursor.Key.valueOf(sort.toUpperCase()))
+                    : MemberCursor.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        Slice<Member> slice = memberRepository.findAfter(cursor, size);
+        List<Member> content = slice.getContent();
+        String next = slice.hasNext() ? cursor.next(content.get(content.size() - 1)).encode() : null;
+
+        return new MemberWindowDto(
+                content.stream().map(MemberDto::new).collect(Collectors.toList()),
+                next,
+                slice.hasNext());
+    }
+
+
+    //전체 회원을 한 줄에 하나씩 JSON 으로 내보낸다. 읽는 대로 써서 메모리는 테이블 크기와 상관없이 일정
+    @GetMapping("/members/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        ObjectWriter writer = objectMapper.writerFor(MemberDto.class);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        StreamingResponseBody body = out -> readOnly.executeWithoutResult(status -> {
+            try (Stream<MemberDto> members = memberRepository.streamMemberDto()) {
+                writeLines(writer, members.iterator(), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private static ResponseStatusException notFound(Long id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "member " + id + " not found");
+    }
+
+    private static void writeLines(ObjectWriter writer, Iterator<MemberDto> members, OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+        int count = 0;
+        while (members.hasNext()) {
+            buffered.write(writer.writeValueAsBytes(members.next()));
+            buffered.write('\n');
+            if (++count % 500 == 0) {
+                buffered.flush();
+            }
+        }
+        buffered.flush();
+    }
+
 
 //    @PostConstruct
 //    public void init(){
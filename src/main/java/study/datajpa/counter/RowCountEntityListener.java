@@ -0,0 +1,56 @@
+package study.datajpa.counter;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+//flush 중 엔티티가 insert/update/delete 될 때마다 RowCounters 의 트랜잭션 증감에 더한다
+@Component
+@RequiredArgsConstructor
+public class RowCountEntityListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener, SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final RowCounters rowCounters;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        rowCounters.inserted(event.getPersister(), event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        rowCounters.updated(event.getPersister(), event.getOldState(), event.getState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        rowCounters.deleted(event.getPersister(), event.getId(), event.getDeletedState());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
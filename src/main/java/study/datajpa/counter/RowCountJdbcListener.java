@@ -0,0 +1,56 @@
+package study.datajpa.counter;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+//insert/update/delete 가 실제로 바꾼 행 수를 RowCounters 에 넘긴다.
+//데이터소스가 만들어질 때 붙는 빈이라 EntityManagerFactory 에 기대지 않도록 RowCounters 가 스스로 자기를 붙인다 (그 전 SQL 은 무시)
+@Component
+public class RowCountJdbcListener extends JdbcEventListener {
+
+    private volatile RowCounters rowCounters;
+
+    void attach(RowCounters rowCounters) {
+        this.rowCounters = rowCounters;
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos, int rowCount, SQLException e) {
+        executed(statementInformation.getSql(), e == null ? rowCount : -1);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos, String sql, int rowCount, SQLException e) {
+        executed(sql, e == null ? rowCount : -1);
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos, int[] updateCounts, SQLException e) {
+        //SUCCESS_NO_INFO(-2) 처럼 행 수를 모르는 결과가 하나라도 있으면 모르는 것으로
+        boolean known = e == null && updateCounts != null && Arrays.stream(updateCounts).allMatch(count -> count >= 0);
+        executed(statementInformation.getSql(), known ? Arrays.stream(updateCounts).asLongStream().sum() : -1);
+    }
+
+    //execute() 로 실행한 DML 은 바뀐 행 수를 여기서 알 수 없다
+    @Override
+    public void onAfterExecute(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        executed(statementInformation.getSql(), -1);
+    }
+
+    @Override
+    public void onAfterExecute(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        executed(sql, -1);
+    }
+
+    private void executed(String sql, long rows) {
+        RowCounters counters = rowCounters;
+        if (counters != null) {
+            counters.executed(sql, rows);
+        }
+    }
+}
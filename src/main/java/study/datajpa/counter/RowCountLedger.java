@@ -0,0 +1,91 @@
+package study.datajpa.counter;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+//트랜잭션 하나에서 생긴 행 수 증감. 커밋되면 RowCounters 에 더하고 롤백되면 버린다.
+//같은 변경을 엔티티 이벤트와 JDBC 실행 결과 양쪽에서 세어 두고, 둘이 다르면(벌크/네이티브 DML) 증감을 믿지 않는다
+final class RowCountLedger {
+
+    enum Op {
+        INSERT, DELETE,
+        //회원의 팀(team_id)을 쓰는 update. 팀별 회원 수에만 영향
+        UPDATE
+    }
+
+    private final Map<String, Map<Op, Long>> entityRows = new HashMap<>();
+    private final Map<String, Map<Op, Long>> jdbcRows = new HashMap<>();
+    //영향받은 행 수를 모르는 DML 이 실행된 테이블
+    private final Set<String> unknown = new HashSet<>();
+
+    private final Map<Long, Long> teamMembers = new HashMap<>();
+    private final Set<Long> deletedTeams = new HashSet<>();
+    private boolean teamsUnknown;
+
+    void entity(String table, Op op) {
+        entityRows.computeIfAbsent(table, key -> new EnumMap<>(Op.class)).merge(op, 1L, Long::sum);
+    }
+
+    void jdbc(String table, Op op, long rows) {
+        if (rows < 0) {
+            unknown.add(table);
+            return;
+        }
+        jdbcRows.computeIfAbsent(table, key -> new EnumMap<>(Op.class)).merge(op, rows, Long::sum);
+    }
+
+    void teamMember(Long teamId, long delta) {
+        if (teamId != null) {
+            teamMembers.merge(teamId, delta, Long::sum);
+        }
+    }
+
+    void teamDeleted(Long teamId) {
+        deletedTeams.add(teamId);
+    }
+
+    //update 전 상태를 모르는 경우 등
+    void teamsUnknown() {
+        teamsUnknown = true;
+    }
+
+    boolean touched(String table) {
+        return entityRows.containsKey(table) || jdbcRows.containsKey(table) || unknown.contains(table);
+    }
+
+    long delta(String table) {
+        return rows(entityRows, table, Op.INSERT) - rows(entityRows, table, Op.DELETE);
+    }
+
+    boolean totalsMatch(String table) {
+        return !unknown.contains(table)
+                && rows(entityRows, table, Op.INSERT) == rows(jdbcRows, table, Op.INSERT)
+                && rows(entityRows, table, Op.DELETE) == rows(jdbcRows, table, Op.DELETE);
+    }
+
+    boolean teamsMatch(String memberTable) {
+        return !teamsUnknown
+                && totalsMatch(memberTable)
+                && rows(entityRows, memberTable, Op.UPDATE) == rows(jdbcRows, memberTable, Op.UPDATE);
+    }
+
+    long teamMemberDelta(Long teamId) {
+        return teamMembers.getOrDefault(teamId, 0L);
+    }
+
+    Map<Long, Long> getTeamMembers() {
+        return teamMembers;
+    }
+
+    Set<Long> getDeletedTeams() {
+        return deletedTeams;
+    }
+
+    private static long rows(Map<String, Map<Op, Long>> rows, String table, Op op) {
+        Map<Op, Long> byOp = rows.get(table);
+        return byOp == null ? 0 : byOp.getOrDefault(op, 0L);
+    }
+}
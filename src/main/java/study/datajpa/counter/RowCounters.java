@@ -0,0 +1,581 @@
+package study.datajpa.counter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.counter.RowCountLedger.Op;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Member / Team 행 수와 팀별 회원 수를 메모리(LongAdder)에 들고 있다가 count 에 테이블을 읽지 않고 답한다.
+//트랜잭션마다 엔티티 이벤트로 증감을 모아(RowCountLedger) 커밋된 것만 더하고, 롤백되면 버린다.
+//같은 트랜잭션에서 JDBC 로 실제 바뀐 행 수(RowCountJdbcListener)가 엔티티 이벤트와 다르면 벌크/네이티브 DML 이 섞인 것이므로
+//그 카운터는 stale 로 두고 다시 셀 때까지 count 쿼리로 답한다.
+//시작할 때 DB 에서 세고, flush-interval 마다 stale 인 카운터를 다시 센 뒤 지난번과 달라진 값만 row_counter 테이블에 기록한다.
+//ledger 는 DB 커밋 뒤(afterCompletion)에 더해지므로, 다시 셀 때는 새 ledger 를 잠깐 막고(첫 변경에서 기다린다)
+//반영되지 않은 ledger 가 다 끝난 뒤에 센다. rebuild-wait 안에 끝나지 않으면 stale 로 두고 다음 flush 에 다시 시도한다 (datajpa.row.count.stale).
+//이 애플리케이션 밖에서 바뀌는 행은 알 수 없다 (인스턴스가 여럿이면 각자 자기 쓰기만 안다)
+@Slf4j
+@Component
+public class RowCounters implements MeterBinder, SmartInitializingSingleton {
+
+    private static final Pattern DML = Pattern.compile(
+            "^\\s*(insert\\s+into|delete\\s+from|update)\\s+(?:\\w+\\.)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final String TEAM_PREFIX = "Member.team:";
+    private static final String MERGE =
+            "merge into row_counter (name, row_count, updated_at) key (name) values (?, ?, ?)";
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final EntityManagerFactory emf;
+    private final RowCountJdbcListener jdbcListener;
+
+    //afterSingletonsInstantiated 에서 매핑을 읽어 채운다
+    private String memberTable;
+    private String teamTable;
+    private String teamColumn;
+    private Pattern teamColumnPattern;
+    private int teamProperty;
+
+    //테이블 -> 전체 행 수
+    private final Map<String, Tally> totals = new LinkedHashMap<>();
+    //팀 id -> 회원 수. 팀별 카운터는 stale / version 을 한꺼번에 관리한다
+    private final Map<Long, LongAdder> teamMembers = new ConcurrentHashMap<>();
+    private final AtomicLong teamsVersion = new AtomicLong();
+    private volatile boolean teamsStale = true;
+
+    //커밋 반영은 read lock 으로 동시에 하고, 다시 센 값으로 덮어쓸 때만 write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //새 ledger 는 read lock 을 잠깐 잡고 만든다. 다시 세는 동안 rebuild 가 write lock 을 들고 있어 새 ledger 가 생기지 않는다
+    private final ReentrantReadWriteLock ledgerGate = new ReentrantReadWriteLock();
+    //아직 반영하지 않은(커밋 전이거나 커밋 직후인) ledger 수
+    private final AtomicInteger pendingLedgers = new AtomicInteger();
+    private final Duration rebuildWait;
+
+    //flush 가 row_counter 에 마지막으로 쓴 값. 바뀐 것만 다시 쓴다
+    private final Map<String, Long> written = new HashMap<>();
+    private boolean teamsWritten;
+
+    private final LongAdder counterAnswers = new LongAdder();
+    private final LongAdder queryAnswers = new LongAdder();
+
+    public RowCounters(EntityManager em,
+                       EntityManagerFactory emf,
+                       JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       RowCountJdbcListener jdbcListener,
+                       @Value("${datajpa.row-counters.rebuild-wait:500ms}") Duration rebuildWait) {
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.emf = emf;
+        this.jdbcListener = jdbcListener;
+        this.rebuildWait = rebuildWait;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        MetamodelImplementor metamodel = emf.unwrap(SessionFactoryImplementor.class).getMetamodel();
+        AbstractEntityPersister member = (AbstractEntityPersister) metamodel.entityPersister(Member.class);
+        AbstractEntityPersister team = (AbstractEntityPersister) metamodel.entityPersister(Team.class);
+        memberTable = member.getTableName().toLowerCase(Locale.ROOT);
+        teamTable = team.getTableName().toLowerCase(Locale.ROOT);
+        teamColumn = member.getPropertyColumnNames("team")[0];
+        teamColumnPattern = Pattern.compile("\\b" + teamColumn + "\\b", Pattern.CASE_INSENSITIVE);
+        teamProperty = member.getEntityMetamodel().getPropertyIndex("team");
+
+        totals.put(memberTable, new Tally(Member.class.getSimpleName(), memberTable));
+        totals.put(teamTable, new Tally(Team.class.getSimpleName(), teamTable));
+        jdbcListener.attach(this);
+    }
+
+    public boolean hasCounter(Class<?> entityType) {
+        return table(entityType) != null;
+    }
+
+    //countQuery 는 카운터가 stale 이거나 이 트랜잭션에서 벌크 DML 을 실행했을 때만 쓴다
+    public long count(Class<?> entityType, LongSupplier countQuery) {
+        String table = table(entityType);
+        if (table == null) {
+            throw new IllegalArgumentException(entityType.getName() + " has no row counter");
+        }
+        flushIfNeeded();
+
+        Tally tally = totals.get(table);
+        RowCountLedger ledger = currentLedger();
+        if (tally.stale || (ledger != null && !ledger.totalsMatch(table))) {
+            queryAnswers.increment();
+            return countQuery.getAsLong();
+        }
+        counterAnswers.increment();
+        //아직 커밋하지 않은 자기 트랜잭션의 증감까지 더한다
+        return tally.value.sum() + (ledger == null ? 0 : ledger.delta(table));
+    }
+
+    public long countMembers(Long teamId, LongSupplier countQuery) {
+        flushIfNeeded();
+
+        RowCountLedger ledger = currentLedger();
+        if (teamsStale || (ledger != null && !ledger.teamsMatch(memberTable))) {
+            queryAnswers.increment();
+            return countQuery.getAsLong();
+        }
+        counterAnswers.increment();
+        LongAdder members = teamMembers.get(teamId);
+        return (members == null ? 0 : members.sum()) + (ledger == null ? 0 : ledger.teamMemberDelta(teamId));
+    }
+
+    //stale 인 카운터(all 이면 전부)를 DB 에서 다시 센다.
+    //count(*) 에는 이미 들어갔지만 아직 apply 하지 않은 커밋이 있으면 같은 증감이 두 번 더해지므로, 새 ledger 를 막고 남은 ledger 가 끝난 뒤에 센다.
+    //rebuild-wait 안에 끝나지 않으면 세지 않고 stale 로 남긴다. ledger 없이 stale 이 된 카운터(version)도 센 값을 버린다
+    public void rebuild(boolean all) {
+        List<Tally> tallies = new ArrayList<>();
+        totals.values().forEach(tally -> {
+            if (all || tally.stale) {
+                tallies.add(tally);
+            }
+        });
+        boolean teams = all || teamsStale;
+        if (tallies.isEmpty() && !teams) {
+            return;
+        }
+
+        if (!closeLedgerGate()) {
+            log.warn("row counters not rebuilt: transactions kept changing members/teams for {}, count queries are used until the next flush",
+                    rebuildWait);
+            return;
+        }
+        try {
+            for (Tally tally : tallies) {
+                long version = tally.version.get();
+                Long rows = jdbcTemplate.queryForObject("select count(*) from " + tally.table, Long.class);
+                lock.writeLock().lock();
+                try {
+                    if (tally.version.get() == version) {
+                        tally.value.add(rows - tally.value.sum());
+                        tally.stale = false;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            if (teams) {
+                rebuildTeams();
+            }
+        } finally {
+            ledgerGate.writeLock().unlock();
+        }
+    }
+
+    private void rebuildTeams() {
+        long version = teamsVersion.get();
+        Map<Long, Long> rows = new HashMap<>();
+        jdbcTemplate.query("select " + teamColumn + ", count(*) from " + memberTable
+                        + " where " + teamColumn + " is not null group by " + teamColumn,
+                rs -> {
+                    rows.put(rs.getLong(1), rs.getLong(2));
+                });
+        lock.writeLock().lock();
+        try {
+            if (teamsVersion.get() == version) {
+                teamMembers.keySet().retainAll(rows.keySet());
+                rows.forEach((teamId, count) -> teamMembers.computeIfAbsent(teamId, key -> new LongAdder())
+                        .add(count - teamMembers.get(teamId).sum()));
+                teamsStale = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //새 ledger 를 막고, 이미 있는 ledger 가 모두 apply(또는 롤백)될 때까지 rebuild-wait 만큼 기다린다.
+    //true 면 gate 의 write lock 을 잡은 채로 돌아온다
+    private boolean closeLedgerGate() {
+        long deadline = System.nanoTime() + rebuildWait.toNanos();
+        boolean closed = false;
+        try {
+            closed = ledgerGate.writeLock().tryLock(rebuildWait.toNanos(), TimeUnit.NANOSECONDS);
+            while (closed && pendingLedgers.get() > 0) {
+                if (System.nanoTime() > deadline) {
+                    ledgerGate.writeLock().unlock();
+                    closed = false;
+                } else {
+                    Thread.sleep(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (closed) {
+                ledgerGate.writeLock().unlock();
+                closed = false;
+            }
+        }
+        return closed;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            rebuild(true);
+        } catch (DataAccessException e) {
+            log.warn("could not build row counters, count queries will be used until the next flush", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datajpa.row-counters.flush-interval:PT10S}")
+    public synchronized void flush() {
+        rebuild(false);
+
+        Map<String, Long> current = new LinkedHashMap<>();
+        totals.values().stream()
+                .filter(tally -> !tally.stale)
+                .forEach(tally -> current.put(tally.name, tally.value.sum()));
+        boolean writeTeams = !teamsStale;
+        if (writeTeams) {
+            teamMembers.forEach((teamId, members) -> current.put(TEAM_PREFIX + teamId, members.sum()));
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> changed = new ArrayList<>();
+        current.forEach((name, rows) -> {
+            if (!rows.equals(written.get(name))) {
+                changed.add(new Object[]{name, rows, now});
+            }
+        });
+        //없어진 팀의 행
+        Set<String> removed = new HashSet<>();
+        if (writeTeams) {
+            written.keySet().stream()
+                    .filter(name -> name.startsWith(TEAM_PREFIX) && !current.containsKey(name))
+                    .forEach(removed::add);
+        }
+        //처음 쓸 때는 이전 실행이 남긴 팀별 행을 통째로 바꾼다
+        boolean replaceTeams = writeTeams && !teamsWritten;
+        if (changed.isEmpty() && removed.isEmpty() && !replaceTeams) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (replaceTeams) {
+                jdbcTemplate.update("delete from row_counter where name like ?", TEAM_PREFIX + "%");
+            } else if (!removed.isEmpty()) {
+                List<Object[]> names = new ArrayList<>();
+                removed.forEach(name -> names.add(new Object[]{name}));
+                jdbcTemplate.batchUpdate("delete from row_counter where name = ?", names);
+            }
+            jdbcTemplate.batchUpdate(MERGE, changed);
+        });
+        if (replaceTeams) {
+            written.keySet().removeIf(name -> name.startsWith(TEAM_PREFIX));
+            teamsWritten = true;
+        }
+        written.keySet().removeAll(removed);
+        changed.forEach(row -> written.put((String) row[0], (Long) row[1]));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("datajpa.row.count.requests", counterAnswers, LongAdder::doubleValue)
+                .tag("result", "counter")
+                .description("Row counts answered from in-memory counters")
+                .register(registry);
+        FunctionCounter.builder("datajpa.row.count.requests", queryAnswers, LongAdder::doubleValue)
+                .tag("result", "query")
+                .description("Row counts answered by a count query")
+                .register(registry);
+        //1 이면 다시 셀 때까지 count 쿼리로 답하는 중
+        totals.values().forEach(tally -> Gauge.builder("datajpa.row.count.stale", tally, t -> t.stale ? 1 : 0)
+                .tag("counter", tally.name)
+                .description("Row counters waiting for a rebuild")
+                .register(registry));
+        Gauge.builder("datajpa.row.count.stale", this, counters -> counters.teamsStale ? 1 : 0)
+                .tag("counter", "Member.team")
+                .description("Row counters waiting for a rebuild")
+                .register(registry);
+    }
+
+    //RowCountEntityListener 에서. flush 중 엔티티 한 건이 insert/update/delete 됐다
+    void inserted(EntityPersister persister, Object[] state) {
+        String table = table(persister.getMappedClass());
+        if (table == null) {
+            return;
+        }
+        RowCountLedger ledger = ledger();
+        if (ledger == null) {
+            markStale(table);
+            return;
+        }
+        ledger.entity(table, Op.INSERT);
+        if (table.equals(memberTable)) {
+            ledger.teamMember(teamId(state), 1);
+        }
+    }
+
+    void updated(EntityPersister persister, Object[] oldState, Object[] state) {
+        if (!memberTable.equals(table(persister.getMappedClass()))) {
+            return;
+        }
+        RowCountLedger ledger = ledger();
+        if (ledger == null) {
+            markStale(memberTable);
+            return;
+        }
+        ledger.entity(memberTable, Op.UPDATE);
+        if (oldState == null) {
+            ledger.teamsUnknown();
+            return;
+        }
+        Long before = teamId(oldState);
+        Long after = teamId(state);
+        if (!Objects.equals(before, after)) {
+            ledger.teamMember(before, -1);
+            ledger.teamMember(after, 1);
+        }
+    }
+
+    void deleted(EntityPersister persister, Object id, Object[] deletedState) {
+        String table = table(persister.getMappedClass());
+        if (table == null) {
+            return;
+        }
+        RowCountLedger ledger = ledger();
+        if (ledger == null) {
+            markStale(table);
+            return;
+        }
+        ledger.entity(table, Op.DELETE);
+        if (table.equals(teamTable)) {
+            ledger.teamDeleted((Long) id);
+        } else if (deletedState == null) {
+            ledger.teamsUnknown();
+        } else {
+            ledger.teamMember(teamId(deletedState), -1);
+        }
+    }
+
+    //RowCountJdbcListener 에서. rows 가 음수면 영향받은 행 수를 모른다
+    void executed(String sql, long rows) {
+        if (sql == null) {
+            return;
+        }
+        Matcher matcher = DML.matcher(sql);
+        if (!matcher.find()) {
+            return;
+        }
+        String table = matcher.group(2).toLowerCase(Locale.ROOT);
+        if (!totals.containsKey(table)) {
+            return;
+        }
+        Op op = op(matcher.group(1));
+        //팀 컬럼을 건드리지 않는 update (bulkAgePlus 등) 는 어떤 카운터에도 영향이 없다
+        if (op == Op.UPDATE && !(table.equals(memberTable) && teamColumnPattern.matcher(sql).find())) {
+            return;
+        }
+
+        RowCountLedger ledger = ledger();
+        if (ledger == null) {
+            //트랜잭션 밖(auto commit)에서 이미 반영된 DML
+            markStale(table);
+            return;
+        }
+        ledger.jdbc(table, op, rows);
+    }
+
+    private static Op op(String keyword) {
+        switch (keyword.toLowerCase(Locale.ROOT).charAt(0)) {
+            case 'i':
+                return Op.INSERT;
+            case 'd':
+                return Op.DELETE;
+            default:
+                return Op.UPDATE;
+        }
+    }
+
+    private String table(Class<?> entityType) {
+        if (entityType == Member.class) {
+            return memberTable;
+        }
+        if (entityType == Team.class) {
+            return teamTable;
+        }
+        return null;
+    }
+
+    private Long teamId(Object[] state) {
+        Team team = (Team) state[teamProperty];
+        //프록시여도 id 는 초기화 없이 꺼낸다
+        return team == null ? null : team.getId();
+    }
+
+    private void apply(RowCountLedger ledger) {
+        lock.readLock().lock();
+        try {
+            totals.forEach((table, tally) -> {
+                if (!ledger.touched(table)) {
+                    return;
+                }
+                if (ledger.totalsMatch(table)) {
+                    tally.value.add(ledger.delta(table));
+                } else {
+                    tally.stale = true;
+                }
+                tally.version.incrementAndGet();
+            });
+
+            if (ledger.touched(memberTable) || !ledger.getDeletedTeams().isEmpty()) {
+                if (ledger.teamsMatch(memberTable)) {
+                    ledger.getTeamMembers().forEach((teamId, delta) ->
+                            teamMembers.computeIfAbsent(teamId, key -> new LongAdder()).add(delta));
+                } else {
+                    teamsStale = true;
+                }
+                ledger.getDeletedTeams().forEach(teamMembers::remove);
+                teamsVersion.incrementAndGet();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markStale(String table) {
+        lock.readLock().lock();
+        try {
+            Tally tally = totals.get(table);
+            tally.stale = true;
+            tally.version.incrementAndGet();
+            if (table.equals(memberTable)) {
+                teamsStale = true;
+                teamsVersion.incrementAndGet();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //트랜잭션 리소스로 묶지 않고 synchronization 에 들고 있는다.
+    //REQUIRES_NEW 로 바깥 트랜잭션이 중단되면 synchronization 목록도 같이 바뀌므로 안쪽 트랜잭션은 자기 ledger 를 갖는다
+    private RowCountLedger ledger() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        RowCountLedger ledger = currentLedger();
+        if (ledger == null) {
+            ledger = new RowCountLedger();
+            //첫 변경부터 apply 까지는 다시 센 값을 믿을 수 없다. rebuild 중이면 끝날 때까지 기다렸다가 pending 을 올린다
+            ledgerGate.readLock().lock();
+            try {
+                pendingLedgers.incrementAndGet();
+            } finally {
+                ledgerGate.readLock().unlock();
+            }
+            TransactionSynchronizationManager.registerSynchronization(new LedgerSynchronization(ledger));
+        }
+        return ledger;
+    }
+
+    private RowCountLedger currentLedger() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof LedgerSynchronization
+                    && ((LedgerSynchronization) synchronization).owner() == this) {
+                return ((LedgerSynchronization) synchronization).ledger;
+            }
+        }
+        return null;
+    }
+
+    //트랜잭션 안이면 변경 내용을 먼저 반영해 이벤트를 받는다 (원래 count 쿼리의 auto flush 와 같은 역할)
+    //readOnly 트랜잭션은 FlushMode.MANUAL 이므로 내보내지 않는다
+    private void flushIfNeeded() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class LedgerSynchronization implements TransactionSynchronization {
+
+        private final RowCountLedger ledger;
+
+        RowCounters owner() {
+            return RowCounters.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            try {
+                if (status == STATUS_COMMITTED) {
+                    apply(ledger);
+                }
+            } finally {
+                pendingLedgers.decrementAndGet();
+            }
+        }
+    }
+
+    private static class Tally {
+
+        private final String name;
+        private final String table;
+        private final LongAdder value = new LongAdder();
+        private final AtomicLong version = new AtomicLong();
+        //시작할 때는 아직 세지 않았다
+        private volatile boolean stale = true;
+
+        Tally(String name, String table) {
+            this.name = name;
+            this.table = table;
+        }
+    }
+}
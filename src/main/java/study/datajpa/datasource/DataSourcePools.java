@@ -0,0 +1,22 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+//라우팅 대상 커넥션 풀들. DataSource 빈이 아니어서(p6spy 가 두 번 감싸지 않도록) 종료는 이 빈이 맡는다
+@Getter
+@RequiredArgsConstructor
+public class DataSourcePools implements AutoCloseable {
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,12 @@
+package study.datajpa.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//readOnly 트랜잭션이라도 복제 지연 없이 최신 값을 읽어야 하는 메서드. 트랜잭션이 시작되기 전(바깥)에 적용된다
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadFromPrimary {
+}
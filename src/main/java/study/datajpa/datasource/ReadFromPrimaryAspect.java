@@ -0,0 +1,24 @@
+package study.datajpa.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ReadFromPrimaryAspect {
+
+    @Around("@annotation(study.datajpa.datasource.ReadFromPrimary) || @within(study.datajpa.datasource.ReadFromPrimary)")
+    public Object pin(ProceedingJoinPoint joinPoint) throws Throwable {
+        ReadWriteRoutingDataSource.pinPrimary();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.unpinPrimary();
+        }
+    }
+}
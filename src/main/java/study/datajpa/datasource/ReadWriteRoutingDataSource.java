@@ -0,0 +1,138 @@
+package study.datajpa.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+//@Transactional(readOnly = true) 트랜잭션은 복제본으로, 나머지는 primary 로 보낸다.
+//트랜잭션의 readOnly 여부는 커넥션을 얻는 시점에 알아야 하므로 LazyConnectionDataSourceProxy 로 감싸서 쓴다.
+//쓰기 트랜잭션 안에서 호출된 readOnly 메서드는 바깥 트랜잭션에 참여하므로 primary 에 남는다.
+//read-your-writes 는 스레드 단위다: DML 을 실제로 실행한(WriteStatementListener) 트랜잭션이 커밋되면 그 스레드만 window 동안 primary 에서 읽는다.
+//요청이 시작될 때 지우므로(ReadYourWritesInterceptor) 같은 요청 안에서만 보장되고, AsyncMemberRepository 작업에는 넘겨준다.
+//다른 요청(같은 클라이언트의 다음 요청 포함)이나 다른 인스턴스는 복제본에서 읽을 수 있다
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Long> lastWriteCommittedAt = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> primaryPinned = ThreadLocal.withInitial(() -> 0);
+
+    private final List<HikariDataSource> replicas;
+    private final long readYourWritesWindowNanos;
+
+    public ReadWriteRoutingDataSource(DataSourcePools pools, Duration readYourWritesWindow) {
+        this.replicas = pools.getReplicas();
+        this.readYourWritesWindowNanos = readYourWritesWindow.toNanos();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, pools.getPrimary());
+        for (HikariDataSource replica : replicas) {
+            targets.put(replica.getPoolName(), replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(pools.getPrimary());
+        afterPropertiesSet();
+    }
+
+    //@ReadFromPrimary 범위 안에서는 readOnly 라도 primary
+    static void pinPrimary() {
+        primaryPinned.set(primaryPinned.get() + 1);
+    }
+
+    static void unpinPrimary() {
+        primaryPinned.set(primaryPinned.get() - 1);
+    }
+
+    //이 스레드가 마지막으로 쓰기를 커밋한 시각. 다른 스레드에서 이어서 읽을 때 restoreLastWrite 로 넘긴다
+    public static Long lastWrite() {
+        return lastWriteCommittedAt.get();
+    }
+
+    public static void restoreLastWrite(Long committedAt) {
+        if (committedAt == null) {
+            lastWriteCommittedAt.remove();
+        } else {
+            lastWriteCommittedAt.set(committedAt);
+        }
+    }
+
+    public static void forgetWrites() {
+        lastWriteCommittedAt.remove();
+    }
+
+    //WriteStatementListener 에서. 트랜잭션 안이면 커밋된 뒤, 밖이면(auto commit) 바로 시각을 남긴다.
+    //콜백은 트랜잭션마다 하나. REQUIRES_NEW 는 동기화 목록이 따로라 안쪽 트랜잭션에도 따로 등록된다
+    static void wrote() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lastWriteCommittedAt.set(System.nanoTime());
+            return;
+        }
+        boolean registered = TransactionSynchronizationManager.getSynchronizations().stream()
+                .anyMatch(WriteCommitSynchronization.class::isInstance);
+        if (!registered) {
+            TransactionSynchronizationManager.registerSynchronization(new WriteCommitSynchronization());
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || primaryPinned.get() > 0 || recentlyWrote()) {
+            return PRIMARY;
+        }
+        return leastLoadedReplica().getPoolName();
+    }
+
+    //사용 중 + 대기 중인 커넥션이 가장 적은 복제본. 같으면 무작위로 골라 한쪽으로 몰리지 않게 한다
+    private HikariDataSource leastLoadedReplica() {
+        HikariDataSource chosen = null;
+        int chosenLoad = Integer.MAX_VALUE;
+        int ties = 0;
+        for (HikariDataSource replica : replicas) {
+            int load = load(replica);
+            if (load < chosenLoad) {
+                chosen = replica;
+                chosenLoad = load;
+                ties = 1;
+            } else if (load == chosenLoad && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                chosen = replica;
+            }
+        }
+        return chosen;
+    }
+
+    private static int load(HikariDataSource replica) {
+        HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+    }
+
+    private boolean recentlyWrote() {
+        Long committedAt = lastWriteCommittedAt.get();
+        if (committedAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - committedAt < readYourWritesWindowNanos) {
+            return true;
+        }
+        lastWriteCommittedAt.remove();
+        return false;
+    }
+
+    private static class WriteCommitSynchronization implements TransactionSynchronization {
+
+        @Override
+        public void afterCommit() {
+            lastWriteCommittedAt.set(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.datajpa.datasource;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+//insert/update/delete/merge(와 DDL)를 실행한 트랜잭션만 read-your-writes 대상으로 남긴다.
+//쓰기 트랜잭션이라도 읽기만 했으면 복제본 라우팅에 영향을 주지 않는다
+@Component
+public class WriteStatementListener extends JdbcEventListener {
+
+    private static final Pattern WRITE = Pattern.compile(
+            "^\\s*(insert|update|delete|merge|create|alter|drop|truncate)\\b", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos, int rowCount, SQLException e) {
+        executed(statementInformation.getSql(), e);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos, String sql, int rowCount, SQLException e) {
+        executed(sql, e);
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos, int[] updateCounts, SQLException e) {
+        executed(statementInformation.getSql(), e);
+    }
+
+    @Override
+    public void onAfterExecute(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        executed(statementInformation.getSql(), e);
+    }
+
+    @Override
+    public void onAfterExecute(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        executed(sql, e);
+    }
+
+    private static void executed(String sql, SQLException e) {
+        if (e == null && sql != null && WRITE.matcher(sql).find()) {
+            ReadWriteRoutingDataSource.wrote();
+        }
+    }
+}
@@ -18,6 +18,10 @@ public class MemberDto {
         this.teamName = teamName;
     }
 
+    public MemberDto(MemberSnapshot member) {
+        this(member.getId(), member.getUsername(), member.getTeamName());
+    }
+
     public MemberDto(Member member){
         this.id= member.getId();
         this.username=member.getUsername();
@@ -0,0 +1,14 @@
+package study.datajpa.dto;
+
+import lombok.Value;
+
+//MemberUsernameCache, MemberIdCache 에 담는 읽기 전용 회원 정보. 엔티티가 아니라서 캐시에서 꺼내 여러 스레드가 같이 봐도 된다
+@Value
+public class MemberSnapshot {
+
+    Long id;
+    String username;
+    int age;
+    Long teamId;
+    String teamName;
+}
@@ -0,0 +1,22 @@
+package study.datajpa.dto;
+
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MemberWindowDto {
+
+    private List<MemberDto> content;
+
+    //다음 페이지를 요청할 때 그대로 넘기는 토큰. 마지막 페이지면 null
+    private String next;
+    private boolean hasNext;
+
+    public MemberWindowDto(List<MemberDto> content, String next, boolean hasNext) {
+        this.content = content;
+        this.next = next;
+        this.hasNext = hasNext;
+    }
+}
@@ -4,7 +4,12 @@ import lombok.*;
 
 import javax.persistence.*;
 
+//username 조회(findByUsername, findByNames, findLockByUsername)와 username + age 조회를 같은 인덱스로 처리한다
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username_age", columnList = "username, age"),
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -15,10 +20,17 @@ import javax.persistence.*;
 )
 public class Member extends BaseEntity {
 
+    //allocationSize 만큼 시퀀스를 한 번에 당겨와서(pooled-lo) insert 마다 시퀀스를 조회하지 않는다
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
+
+    //동시 수정은 커밋 시점에 version 비교로 감지한다 (OptimisticLockException)
+    @Version
+    private Long version;
+
     private String username;
     int age;
 
@@ -0,0 +1,26 @@
+package study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+//RowCounters 가 주기적으로 기록하는 행 수 (바뀐 것만 다시 쓴다). name 은 "Member", "Team", "Member.team:{teamId}"
+//값은 JDBC 로 merge 하므로 엔티티로는 읽기만 한다
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class RowCounter {
+
+    @Id
+    private String name;
+
+    private long rowCount;
+
+    private LocalDateTime updatedAt;
+}
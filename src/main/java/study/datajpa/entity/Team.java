@@ -1,12 +1,21 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+//Member.team 프록시들을 초기화할 때 in 절로 한 번에 가져온다
+//name 인덱스는 MemberSpec.teamName / MemberFilter.teamName 의 조인 조건용
 @Entity
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -14,11 +23,18 @@ import java.util.List;
 public class Team extends BaseTimeEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
+
+    @Version
+    private Long version;
+
     private String name;
 
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,41 @@
+package study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+//팀별 회원 집계 (리포트용 읽기 모델). 회원이 바뀔 때 같은 트랜잭션에서 TeamStatsUpdater 가 JDBC 로 갱신한다.
+//팀 삭제를 막지 않도록 team 테이블에 FK 를 걸지 않는다
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+
+    private long ageSum;
+
+    //회원이 없으면 null
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    private LocalDateTime newestCreatedDate;
+
+    public double getAverageAge() {
+        return memberCount == 0 ? 0 : (double) ageSum / memberCount;
+    }
+}
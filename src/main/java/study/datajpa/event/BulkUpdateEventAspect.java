@@ -0,0 +1,30 @@
+package study.datajpa.event;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+//@Modifying 쿼리 메서드(bulkAgePlus 등)가 끝나면 BulkUpdatedEvent 발행
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class BulkUpdateEventAspect {
+
+    private final ApplicationEventPublisher publisher;
+
+    @AfterReturning(pointcut = "@annotation(org.springframework.data.jpa.repository.Modifying)", returning = "result")
+    public void afterModifying(JoinPoint joinPoint, Object result) {
+        Class<?>[] typeArguments = GenericTypeResolver.resolveTypeArguments(
+                joinPoint.getSignature().getDeclaringType(), Repository.class);
+        if (typeArguments == null) {
+            return;
+        }
+        int affectedRows = result instanceof Number ? ((Number) result).intValue() : -1;
+        publisher.publishEvent(new BulkUpdatedEvent(typeArguments[0], affectedRows));
+    }
+}
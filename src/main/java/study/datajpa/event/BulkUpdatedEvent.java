@@ -0,0 +1,15 @@
+package study.datajpa.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+//벌크 연산은 영속성 컨텍스트와 엔티티 이벤트를 거치지 않으므로 따로 알린다
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkUpdatedEvent {
+
+    private final Class<?> entityType;
+    private final int affectedRows;
+}
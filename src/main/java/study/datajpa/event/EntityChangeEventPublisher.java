@@ -0,0 +1,64 @@
+package study.datajpa.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import study.datajpa.event.EntityChangedEvent.ChangeType;
+
+import javax.persistence.EntityManagerFactory;
+
+//Hibernate 의 post insert/update/delete 이벤트를 스프링 이벤트로 바꿔서 발행
+@Component
+@RequiredArgsConstructor
+public class EntityChangeEventPublisher implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener, SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher publisher;
+
+    //EntityManagerFactory 를 백그라운드에서 만들 때(fast-startup) 다른 빈 생성과 겹치도록 싱글톤을 다 만든 뒤에 등록한다
+    @Override
+    public void afterSingletonsInstantiated() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(ChangeType.INSERT, event.getPersister(), event.getId(), event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(ChangeType.UPDATE, event.getPersister(), event.getId(), event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(ChangeType.DELETE, event.getPersister(), event.getId(), event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void publish(ChangeType type, EntityPersister persister, Object id, Object entity) {
+        publisher.publishEvent(new EntityChangedEvent(type, persister.getMappedClass(), id, entity));
+    }
+}
@@ -0,0 +1,22 @@
+package study.datajpa.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+//flush 시점에 엔티티 한 건이 insert/update/delete 될 때 발행
+@Getter
+@ToString(exclude = "entity")
+@RequiredArgsConstructor
+public class EntityChangedEvent {
+
+    public enum ChangeType {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final ChangeType type;
+    private final Class<?> entityType;
+    private final Object id;
+    //flush 된 상태의 엔티티. 받는 쪽에서 바꾸면 안 된다
+    private final Object entity;
+}
@@ -0,0 +1,33 @@
+package study.datajpa.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+//DB 나 2차 캐시에서 엔티티가 영속성 컨텍스트로 올라올 때마다 QueryCounters 에 센다
+@Component
+@RequiredArgsConstructor
+public class EntityLoadCounter implements PostLoadEventListener, SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        QueryCounters.current().entityLoaded();
+    }
+}
@@ -0,0 +1,60 @@
+package study.datajpa.metrics;
+
+//현재 스레드에서 실행된 JDBC 문장 수, 읽은 행 수, 영속성 컨텍스트에 올라온 엔티티 수. 계속 증가만 하고
+//RepositoryMetricsAspect 가 메서드 호출 전후 값의 차이를 기록한다
+public final class QueryCounters {
+
+    private static final ThreadLocal<QueryCounters> CURRENT = ThreadLocal.withInitial(QueryCounters::new);
+
+    private long statements;
+    private long rows;
+    private long entitiesLoaded;
+
+    private QueryCounters() {
+    }
+
+    public static QueryCounters current() {
+        return CURRENT.get();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(statements, rows, entitiesLoaded);
+    }
+
+    void statementExecuted() {
+        statements++;
+    }
+
+    void rowRead() {
+        rows++;
+    }
+
+    void entityLoaded() {
+        entitiesLoaded++;
+    }
+
+    public static final class Snapshot {
+
+        private final long statements;
+        private final long rows;
+        private final long entitiesLoaded;
+
+        private Snapshot(long statements, long rows, long entitiesLoaded) {
+            this.statements = statements;
+            this.rows = rows;
+            this.entitiesLoaded = entitiesLoaded;
+        }
+
+        public long statementsSince(Snapshot before) {
+            return statements - before.statements;
+        }
+
+        public long rowsSince(Snapshot before) {
+            return rows - before.rows;
+        }
+
+        public long entitiesLoadedSince(Snapshot before) {
+            return entitiesLoaded - before.entitiesLoaded;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package study.datajpa.metrics;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+//p6spy 스타터가 JdbcEventListener 빈을 데이터소스에 붙인다. 실행한 문장과 읽은 행을 QueryCounters 에 센다
+@Component
+public class QueryCountingJdbcListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryCounters.current().statementExecuted();
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+        if (hasNext) {
+            QueryCounters.current().rowRead();
+        }
+    }
+}
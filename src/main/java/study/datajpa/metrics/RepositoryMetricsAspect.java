@@ -0,0 +1,86 @@
+package study.datajpa.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//스프링 데이터 리포지토리와 @Repository 클래스의 메서드마다 실행 시간(히스토그램), JDBC 문장 수, 읽은 행 수,
+//로딩된 엔티티 수를 기록한다. 트랜잭션 프록시보다 바깥이라 커밋 때의 flush 도 그 메서드 몫으로 잡힌다
+//중첩 호출(memberUpdate -> find)은 바깥 메서드에도 안쪽 메서드의 수치가 포함된다
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class RepositoryMetricsAspect {
+
+    public static final String INVOCATIONS = "datajpa.repository.invocations";
+    public static final String STATEMENTS = "datajpa.repository.statements";
+    public static final String ROWS = "datajpa.repository.rows";
+    public static final String ENTITIES = "datajpa.repository.entities.loaded";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))"
+            + " || @within(org.springframework.stereotype.Repository)")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        QueryCounters counters = QueryCounters.current();
+        QueryCounters.Snapshot before = counters.snapshot();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Tags tags = Tags.of("repository", repositoryName(joinPoint.getThis()),
+                    "method", joinPoint.getSignature().getName());
+            sample.stop(Timer.builder(INVOCATIONS)
+                    .tags(tags)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+
+            QueryCounters.Snapshot after = counters.snapshot();
+            summary(STATEMENTS, tags).record(after.statementsSince(before));
+            summary(ROWS, tags).record(after.rowsSince(before));
+            summary(ENTITIES, tags).record(after.entitiesLoadedSince(before));
+        }
+    }
+
+    private DistributionSummary summary(String name, Tags tags) {
+        return DistributionSummary.builder(name)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    //스프링 데이터 리포지토리는 프록시가 구현한 리포지토리 인터페이스 이름(MemberRepository), 나머지는 클래스 이름
+    private String repositoryName(Object proxy) {
+        return repositoryNames.computeIfAbsent(proxy.getClass(), type -> {
+            if (proxy instanceof Advised) {
+                for (Class<?> candidate : ((Advised) proxy).getProxiedInterfaces()) {
+                    if (Repository.class.isAssignableFrom(candidate)) {
+                        return candidate.getSimpleName();
+                    }
+                }
+            }
+            return ClassUtils.getUserClass(AopUtils.getTargetClass(proxy)).getSimpleName();
+        });
+    }
+}
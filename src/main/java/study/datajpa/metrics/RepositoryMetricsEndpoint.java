@@ -0,0 +1,87 @@
+package study.datajpa.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//GET /actuator/repositories : 리포지토리 메서드별 누적 시간 순으로 호출 수, 평균/최대 시간, 호출당 SQL/행/엔티티 수
+@Component
+@Endpoint(id = "repositories")
+@RequiredArgsConstructor
+public class RepositoryMetricsEndpoint {
+
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public List<MethodStats> repositories() {
+        Map<String, MethodStats> stats = new LinkedHashMap<>();
+        for (Timer timer : meterRegistry.find(RepositoryMetricsAspect.INVOCATIONS).timers()) {
+            String repository = timer.getId().getTag("repository");
+            String method = timer.getId().getTag("method");
+            stats.computeIfAbsent(repository + "." + method, key -> new MethodStats(repository, method))
+                    .add(timer);
+        }
+
+        for (MethodStats methodStats : stats.values()) {
+            methodStats.statementsPerCall = mean(RepositoryMetricsAspect.STATEMENTS, methodStats);
+            methodStats.rowsPerCall = mean(RepositoryMetricsAspect.ROWS, methodStats);
+            methodStats.entitiesPerCall = mean(RepositoryMetricsAspect.ENTITIES, methodStats);
+        }
+
+        return stats.values().stream()
+                .sorted(Comparator.comparingDouble(MethodStats::getTotalMs).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private double mean(String name, MethodStats methodStats) {
+        DistributionSummary summary = meterRegistry.find(name)
+                .tag("repository", methodStats.repository)
+                .tag("method", methodStats.method)
+                .summary();
+        return summary == null ? 0 : summary.mean();
+    }
+
+    @Getter
+    public static class MethodStats {
+
+        private final String repository;
+        private final String method;
+        private long count;
+        private long errors;
+        private double totalMs;
+        private double maxMs;
+        private double statementsPerCall;
+        private double rowsPerCall;
+        private double entitiesPerCall;
+
+        MethodStats(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+        }
+
+        public double getMeanMs() {
+            return count == 0 ? 0 : totalMs / count;
+        }
+
+        void add(Timer timer) {
+            count += timer.count();
+            if (!"none".equals(timer.getId().getTag("exception"))) {
+                errors += timer.count();
+            }
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+            maxMs = Math.max(maxMs, timer.max(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package study.datajpa.projection;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//projection-processor 가 이 프로젝션의 ProjectionMaterializer 를 컴파일 시점에 만든다.
+//Gradle 증분 컴파일(aggregating processor)은 바뀌지 않은 클래스를 class 파일로 다시 읽으므로 CLASS retention 이어야 한다
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface GeneratedProjection {
+}
@@ -0,0 +1,14 @@
+package study.datajpa.projection;
+
+import java.util.List;
+
+//조회 결과 한 행을 프로젝션으로 바꾼다. 구현은 projection-processor 가 만든다 (<프로젝션>_Materializer)
+public interface ProjectionMaterializer<T> {
+
+    Class<T> projectionType();
+
+    //row 에 들어 있어야 하는 값의 순서. 중첩 프로젝션은 "team.name" 처럼 경로로 펼친다
+    List<String> properties();
+
+    T materialize(Object[] row);
+}
@@ -0,0 +1,51 @@
+package study.datajpa.projection;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+//컴파일 시점에 만들어진 ProjectionMaterializer 들 (META-INF/services 로 등록된다)
+@Component
+public class ProjectionMaterializers {
+
+    private final Map<Class<?>, ProjectionMaterializer<?>> materializers = new HashMap<>();
+
+    public ProjectionMaterializers() {
+        for (ProjectionMaterializer<?> materializer
+                : ServiceLoader.load(ProjectionMaterializer.class, ClassUtils.getDefaultClassLoader())) {
+            materializers.put(materializer.projectionType(), materializer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Optional<ProjectionMaterializer<T>> find(Class<T> type) {
+        return Optional.ofNullable((ProjectionMaterializer<T>) materializers.get(type));
+    }
+
+    //materializer.properties() 순서대로 고르는 JPQL. 중첩 경로는 left join 으로 (연관이 없으면 중첩 프로젝션이 null)
+    //ex) select m.username, j0.name from Member m left join m.team j0
+    public static String select(ProjectionMaterializer<?> materializer, String entityName, String alias) {
+        Map<String, String> joinAliases = new HashMap<>();
+        Map<String, String> joins = new LinkedHashMap<>();
+        List<String> columns = materializer.properties().stream().map(property -> {
+            String[] path = property.split("\\.");
+            String current = alias;
+            for (int i = 0; i < path.length - 1; i++) {
+                String association = current + "." + path[i];
+                String parent = current;
+                current = joinAliases.computeIfAbsent(association, key -> "j" + joinAliases.size());
+                joins.putIfAbsent(association, " left join " + parent + "." + path[i] + " " + current);
+            }
+            return current + "." + path[path.length - 1];
+        }).collect(Collectors.toList());
+
+        return "select " + String.join(", ", columns) + " from " + entityName + " " + alias + String.join("", joins.values());
+    }
+}
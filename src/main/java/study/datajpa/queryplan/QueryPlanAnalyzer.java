@@ -0,0 +1,411 @@
+package study.datajpa.queryplan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.config.QueryPlanProperties;
+import study.datajpa.queryplan.QueryPlanFinding.Kind;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Parameter;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//리포지토리의 모든 쿼리 메서드(@Query, named query, 메서드 이름 쿼리)와 커스텀 구현 메서드, 엔티티의 @NamedQuery 를
+//샘플 인자로 롤백되는 트랜잭션에서 한 번씩 호출해 Hibernate 가 만든 SQL 을 얻고, H2 EXPLAIN 으로 실행 계획을 본다.
+//실제로 실행되는 문장은 없다. QueryPlanJdbcListener 가 메서드의 첫 문장을 실행 직전에 멈추므로 조회가 테이블 전체를 읽거나
+//벌크 수정/@Lock 조회가 행을 잠그지 않는다. 대신 메서드마다 첫 문장만 본다 (Page 의 count 쿼리 등은 보지 못한다).
+//  CARTESIAN_JOIN: 앞 테이블과 이어지는 조건 없이 조인된 테이블
+//  MISSING_INDEX: 조건이 걸린 테이블을 tableScan
+//  TOO_MANY_ROWS: tableScan 하는 테이블들의 행 수 추정치(INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE)의 곱이 max-scanned-rows 초과
+//datajpa.query-plan.mode 가 log/fail 이면 시작할 때 실행한다. 테스트에서는 analyze() 를 직접 부른다
+@Slf4j
+@Component
+@EnableConfigurationProperties(QueryPlanProperties.class)
+public class QueryPlanAnalyzer {
+
+    private static final Pattern STATEMENT = Pattern.compile("^\\s*(select|with|update|delete)\\b", Pattern.CASE_INSENSITIVE);
+    //FROM "PUBLIC"."MEMBER" "M" /* PUBLIC.IDX_MEMBER_USERNAME_AGE: USERNAME = 'x' */ . UPDATE/DELETE 에는 별칭이 없다
+    private static final Pattern TABLE = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE)\\s+\"?PUBLIC\"?\\.\"?(\\w+)\"?(?:\\s+\"?(\\w+)\"?)?\\s*/\\*\\s*(.*?)\\s*\\*/",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern CONDITION = Pattern.compile(
+            "\\b(?:ON|WHERE)\\b(.*?)(?=\\b(?:INNER\\s+JOIN|LEFT\\s+OUTER\\s+JOIN|RIGHT\\s+OUTER\\s+JOIN|JOIN|WHERE"
+                    + "|GROUP\\s+BY|ORDER\\s+BY|HAVING|LIMIT|OFFSET|FETCH|FOR\\s+UPDATE)\\b|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern CONNECTIVE = Pattern.compile("\\s+(?:AND|OR)\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern REFERENCE = Pattern.compile("\"?(\\w+)\"?\\s*\\.\\s*\"?\\w+");
+    //H2 가 조건 없는 조인에 붙이는 ON 1=1
+    private static final Pattern TRIVIAL = Pattern.compile("^[\\s(]*(?:1\\s*=\\s*1|TRUE)[\\s)]*$", Pattern.CASE_INSENSITIVE);
+
+    private final ApplicationContext applicationContext;
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryPlanJdbcListener jdbcListener;
+    private final QueryPlanProperties properties;
+    private final TransactionTemplate rollbackOnly;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public QueryPlanAnalyzer(ApplicationContext applicationContext,
+                             JdbcTemplate jdbcTemplate,
+                             QueryPlanJdbcListener jdbcListener,
+                             QueryPlanProperties properties,
+                             PlatformTransactionManager transactionManager) {
+        this.applicationContext = applicationContext;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcListener = jdbcListener;
+        this.properties = properties;
+        this.rollbackOnly = new TransactionTemplate(transactionManager);
+        this.rollbackOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (properties.getMode() == QueryPlanProperties.Mode.OFF) {
+            return;
+        }
+        QueryPlanReport report = analyze();
+        report.getSkipped().forEach((query, reason) -> log.info("query plan not checked for {}: {}", query, reason));
+        if (report.getFindings().isEmpty()) {
+            log.info("query plans: {}", report);
+            return;
+        }
+        log.warn("query plans: {}", report);
+        if (properties.getMode() == QueryPlanProperties.Mode.FAIL) {
+            throw new QueryPlanException(report);
+        }
+    }
+
+    public QueryPlanReport analyze() {
+        QueryPlanReport report = new QueryPlanReport();
+        Map<String, Long> rowEstimates = new HashMap<>();
+
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            String repositoryName = information.getRepositoryInterface().getSimpleName();
+
+            Set<Method> methods = new LinkedHashSet<>(information.getQueryMethods().toList());
+            Arrays.stream(information.getRepositoryInterface().getMethods())
+                    .filter(information::isCustomMethod)
+                    .forEach(methods::add);
+            for (Method method : methods) {
+                if (method.isDefault() || method.isBridge() || Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                String query = repositoryName + "." + method.getName();
+                Object[] args;
+                try {
+                    args = sampleArguments(method);
+                } catch (IllegalArgumentException e) {
+                    report.getSkipped().put(query, e.getMessage());
+                    continue;
+                }
+                run(report, query, () -> invoke(repository, method, args), rowEstimates);
+            }
+        }
+
+        for (Map.Entry<String, String> namedQuery : namedQueries().entrySet()) {
+            run(report, namedQuery.getKey(), () -> executeNamedQuery(namedQuery.getKey(), namedQuery.getValue()), rowEstimates);
+        }
+        return report;
+    }
+
+    //SQL 하나의 실행 계획만 본다 (ignore 설정은 적용하지 않는다)
+    public List<QueryPlanFinding> analyze(String query, String sql) {
+        return findings(query, sql, explain(sql), new HashMap<>());
+    }
+
+    private void run(QueryPlanReport report, String query, Runnable call, Map<String, Long> rowEstimates) {
+        rollbackOnly.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            List<String> statements;
+            jdbcListener.start();
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                //멈춘 문장은 본다
+                if (!notExecuted(e)) {
+                    report.getSkipped().put(query, e.toString());
+                }
+            } finally {
+                statements = jdbcListener.stop();
+            }
+
+            List<String> explainable = statements.stream()
+                    .filter(sql -> STATEMENT.matcher(sql).find())
+                    .distinct()
+                    .collect(Collectors.toList());
+            report.analyzed(explainable.size());
+            for (String sql : explainable) {
+                List<QueryPlanFinding> findings;
+                try {
+                    findings = findings(query, sql, explain(sql), rowEstimates);
+                } catch (DataAccessException e) {
+                    report.getSkipped().put(query, "EXPLAIN failed: " + e.getMessage());
+                    continue;
+                }
+                if (properties.getIgnore().containsKey(query)) {
+                    report.getIgnored().addAll(findings);
+                } else {
+                    report.getFindings().addAll(findings);
+                }
+            }
+        });
+    }
+
+    private List<QueryPlanFinding> findings(String query, String sql, String plan, Map<String, Long> rowEstimates) {
+        List<TableAccess> tables = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        Matcher matcher = TABLE.matcher(plan);
+        while (matcher.find()) {
+            String table = matcher.group(1).toUpperCase(Locale.ROOT);
+            String alias = matcher.group(2) == null ? table : matcher.group(2).toUpperCase(Locale.ROOT);
+            positions.putIfAbsent(alias, tables.size());
+            tables.add(new TableAccess(table, alias, matcher.group(3).endsWith(".tableScan")));
+        }
+
+        //조건을 AND/OR 단위로 나누고 각각이 참조하는 별칭
+        List<Set<String>> conditions = new ArrayList<>();
+        Matcher condition = CONDITION.matcher(COMMENT.matcher(plan).replaceAll(" "));
+        while (condition.find()) {
+            for (String piece : CONNECTIVE.split(condition.group(1).trim())) {
+                if (piece.isBlank() || TRIVIAL.matcher(piece).matches()) {
+                    continue;
+                }
+                Set<String> references = new LinkedHashSet<>();
+                Matcher reference = REFERENCE.matcher(piece);
+                while (reference.find()) {
+                    String alias = reference.group(1).toUpperCase(Locale.ROOT);
+                    if (positions.containsKey(alias)) {
+                        references.add(alias);
+                    }
+                }
+                //테이블 하나짜리 UPDATE/DELETE 는 컬럼에 별칭이 없다
+                if (references.isEmpty() && tables.size() == 1) {
+                    references.add(tables.get(0).alias);
+                }
+                conditions.add(references);
+            }
+        }
+
+        List<QueryPlanFinding> findings = new ArrayList<>();
+        long scannedRows = 1;
+        List<String> scannedTables = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            TableAccess access = tables.get(i);
+            int position = i;
+            boolean filtered = false;
+            boolean linked = false;
+            for (Set<String> references : conditions) {
+                //뒤에 오는 테이블을 참조하는 조건은 그 테이블을 읽을 때 쓰인다
+                if (!references.contains(access.alias)
+                        || references.stream().anyMatch(alias -> positions.get(alias) > position)) {
+                    continue;
+                }
+                filtered = true;
+                linked |= references.stream().anyMatch(alias -> positions.get(alias) < position);
+            }
+
+            if (i > 0 && !linked) {
+                findings.add(new QueryPlanFinding(query, Kind.CARTESIAN_JOIN, access.table,
+                        "no join condition to the preceding tables", sql));
+            }
+            if (access.tableScan && filtered) {
+                findings.add(new QueryPlanFinding(query, Kind.MISSING_INDEX, access.table,
+                        linked ? "join condition without an index" : "condition without an index", sql));
+            }
+            if (access.tableScan) {
+                scannedRows = Math.multiplyExact(scannedRows, Math.max(1, rowEstimate(access.table, rowEstimates)));
+                scannedTables.add(access.table);
+            }
+        }
+        if (!scannedTables.isEmpty() && scannedRows > properties.getMaxScannedRows()) {
+            findings.add(new QueryPlanFinding(query, Kind.TOO_MANY_ROWS, String.join(", ", scannedTables),
+                    "about " + scannedRows + " rows scanned (max " + properties.getMaxScannedRows() + ")", sql));
+        }
+        return findings;
+    }
+
+    private static boolean notExecuted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryPlanJdbcListener.NotExecutedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //EXPLAIN 은 잠금 절을 받지 않으므로 떼고 본다
+    private String explain(String sql) {
+        String statement = sql.replaceAll("(?i)\\s+for update\\s*$", "");
+        return String.join("\n", jdbcTemplate.queryForList("explain " + statement, String.class));
+    }
+
+    private long rowEstimate(String table, Map<String, Long> rowEstimates) {
+        return rowEstimates.computeIfAbsent(table, name -> {
+            Long estimate = jdbcTemplate.queryForObject(
+                    "select row_count_estimate from information_schema.tables where table_schema = 'PUBLIC' and table_name = ?",
+                    Long.class, name);
+            return estimate == null ? 0 : estimate;
+        });
+    }
+
+    private static void invoke(Object repository, Method method, Object[] args) {
+        Object result;
+        try {
+            result = method.invoke(repository, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+        if (result instanceof Stream) {
+            ((Stream<?>) result).close();
+        }
+    }
+
+    private void executeNamedQuery(String name, String jpql) {
+        Query query = em.createNamedQuery(name);
+        for (Parameter<?> parameter : query.getParameters()) {
+            Class<?> type = parameter.getParameterType() == null ? String.class : parameter.getParameterType();
+            Object value = sample(ResolvableType.forClass(type));
+            if (parameter.getName() != null) {
+                query.setParameter(parameter.getName(), value);
+            } else {
+                query.setParameter(parameter.getPosition(), value);
+            }
+        }
+        if (jpql.trim().toLowerCase(Locale.ROOT).startsWith("select")) {
+            query.setMaxResults(10).getResultList();
+        } else {
+            query.executeUpdate();
+        }
+    }
+
+    //@NamedQuery 이름 -> JPQL
+    private Map<String, String> namedQueries() {
+        Map<String, String> namedQueries = new LinkedHashMap<>();
+        for (EntityType<?> entity : em.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            List<NamedQuery> declared = new ArrayList<>(Arrays.asList(type.getAnnotationsByType(NamedQuery.class)));
+            NamedQueries container = type.getAnnotation(NamedQueries.class);
+            if (container != null) {
+                declared.addAll(Arrays.asList(container.value()));
+            }
+            declared.forEach(namedQuery -> namedQueries.put(namedQuery.name(), namedQuery.query()));
+        }
+        return namedQueries;
+    }
+
+    private static Object[] sampleArguments(Method method) {
+        Object[] args = new Object[method.getParameterCount()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = sample(ResolvableType.forMethodParameter(method, i));
+        }
+        return args;
+    }
+
+    //메서드 이름 쿼리에 null 을 넘기면 is null 로 바뀌므로 항상 값을 만든다
+    private static Object sample(ResolvableType type) {
+        Class<?> raw = type.resolve(Object.class);
+        if (raw == String.class) {
+            return "x";
+        }
+        if (raw == int.class || raw == Integer.class) {
+            return 1;
+        }
+        if (raw == long.class || raw == Long.class) {
+            return 1L;
+        }
+        if (raw == double.class || raw == Double.class) {
+            return 1.0;
+        }
+        if (raw == BigDecimal.class) {
+            return BigDecimal.ONE;
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return true;
+        }
+        if (raw == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (raw == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (raw.isEnum()) {
+            return raw.getEnumConstants()[0];
+        }
+        if (raw == Pageable.class) {
+            return PageRequest.of(0, 10);
+        }
+        if (raw == Sort.class) {
+            return Sort.unsorted();
+        }
+        if (raw == Iterable.class || Collection.class.isAssignableFrom(raw)) {
+            //엔티티 목록처럼 만들 수 없는 원소면 빈 목록
+            List<Object> elements = new ArrayList<>();
+            try {
+                elements.add(sample(type.as(Iterable.class).getGeneric(0)));
+            } catch (IllegalArgumentException e) {
+                elements.clear();
+            }
+            return Set.class.isAssignableFrom(raw) ? new LinkedHashSet<>(elements) : elements;
+        }
+        throw new IllegalArgumentException("no sample value for " + type);
+    }
+
+    private static class TableAccess {
+
+        private final String table;
+        private final String alias;
+        private final boolean tableScan;
+
+        TableAccess(String table, String alias, boolean tableScan) {
+            this.table = table;
+            this.alias = alias;
+            this.tableScan = tableScan;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package study.datajpa.queryplan;
+
+//datajpa.query-plan.mode=fail 에서 분석 결과 문제가 있는 쿼리가 있을 때. 애플리케이션 시작이 실패한다
+public class QueryPlanException extends RuntimeException {
+
+    public QueryPlanException(QueryPlanReport report) {
+        super("query plan check failed: " + report);
+    }
+}
@@ -0,0 +1,28 @@
+package study.datajpa.queryplan;
+
+import lombok.Value;
+
+@Value
+public class QueryPlanFinding {
+
+    public enum Kind {
+        //앞 테이블과 이어지는 조건 없이 조인된 테이블 (행 수가 곱해진다)
+        CARTESIAN_JOIN,
+        //조건이 있는데 인덱스 없이 풀 스캔하는 테이블
+        MISSING_INDEX,
+        //풀 스캔하는 행 수 추정치가 max-scanned-rows 보다 크다
+        TOO_MANY_ROWS
+    }
+
+    //"MemberRepository.findByUsername" 또는 named query 이름
+    String query;
+    Kind kind;
+    String table;
+    String detail;
+    String sql;
+
+    @Override
+    public String toString() {
+        return kind + " " + query + " (" + table + "): " + detail + "\n  " + sql;
+    }
+}
@@ -0,0 +1,46 @@
+package study.datajpa.queryplan;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//QueryPlanAnalyzer 가 리포지토리 메서드를 실행하는 동안 그 스레드에서 나갈 SQL 을 값이 채워진 채로 모은다.
+//조회든 쓰기든 어떤 문장도 DB 로 보내지 않는다. 첫 문장을 실행 직전에 NotExecutedException 으로 멈춰 SQL 만 남기므로
+//메서드 하나에서 보는 것은 첫 문장뿐이다 (페이지의 count 쿼리, 지연 로딩 같은 뒤따르는 문장은 보지 못한다)
+@Component
+public class QueryPlanJdbcListener extends SimpleJdbcEventListener {
+
+    private final ThreadLocal<List<String>> capturing = new ThreadLocal<>();
+
+    void start() {
+        capturing.set(new ArrayList<>());
+    }
+
+    List<String> stop() {
+        List<String> captured = capturing.get();
+        capturing.remove();
+        return captured;
+    }
+
+    @Override
+    public void onBeforeAnyExecute(StatementInformation statementInformation) {
+        List<String> captured = capturing.get();
+        if (captured == null) {
+            return;
+        }
+        String sql = statementInformation.getSqlWithValues();
+        captured.add(sql);
+        throw new NotExecutedException(sql);
+    }
+
+    //분석 중에 멈춘 문장. 리포지토리 메서드는 여기서 끝나지만 그 SQL 의 실행 계획은 본다
+    static class NotExecutedException extends RuntimeException {
+
+        NotExecutedException(String sql) {
+            super("not executed during query plan analysis: " + sql);
+        }
+    }
+}
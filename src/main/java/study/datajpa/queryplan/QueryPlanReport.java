@@ -0,0 +1,36 @@
+package study.datajpa.queryplan;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class QueryPlanReport {
+
+    private final List<QueryPlanFinding> findings = new ArrayList<>();
+    //샘플 인자를 만들 수 없거나 실행에 실패해서 보지 못한 쿼리 -> 이유
+    private final Map<String, String> skipped = new LinkedHashMap<>();
+    //ignore 설정으로 뺀 발견
+    private final List<QueryPlanFinding> ignored = new ArrayList<>();
+    private int queries;
+    private int statements;
+
+    void analyzed(int statements) {
+        this.queries++;
+        this.statements += statements;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append(queries).append(" queries, ").append(statements).append(" statements, ")
+                .append(findings.size()).append(" findings, ")
+                .append(ignored.size()).append(" ignored, ")
+                .append(skipped.size()).append(" skipped");
+        findings.forEach(finding -> builder.append("\n").append(finding));
+        return builder.toString();
+    }
+}
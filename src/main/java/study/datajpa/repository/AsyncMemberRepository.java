@@ -0,0 +1,136 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.datasource.DataSourcePools;
+import study.datajpa.datasource.ReadWriteRoutingDataSource;
+import study.datajpa.dto.MemberDto;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//MemberRepository 조회를 전용 스레드에서 실행하고 CompletableFuture 로 돌려준다.
+//스레드 수는 primary 커넥션 풀 크기와 같게 해서 커넥션을 기다리며 막혀 있는 스레드가 없게 한다 (복제본이 있어도 primary 로 읽는 경우가 있어 primary 기준).
+//스레드가 다 바쁘면 queue-capacity 까지 줄을 세우고, 넘치거나 max-wait 보다 오래 기다린 작업은 TaskRejectedException 으로 바로 실패시킨다 (bulkhead).
+//작업마다 readOnly 트랜잭션 하나에서 실행하고 그 안에서 DTO 로 바꿔 돌려준다. 스레드를 벗어난 엔티티는 지연 로딩이 안 된다
+@Component
+public class AsyncMemberRepository {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate readOnly;
+    private final ThreadPoolExecutor pool;
+    private final Duration maxWait;
+
+    private final Timer queueWait;
+    private final Counter rejectedFull;
+    private final Counter rejectedExpired;
+
+    public AsyncMemberRepository(MemberRepository memberRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 DataSourcePools dataSourcePools,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${datajpa.async-repository.threads:0}") int threads,
+                                 @Value("${datajpa.async-repository.queue-capacity:100}") int queueCapacity,
+                                 @Value("${datajpa.async-repository.max-wait:1s}") Duration maxWait) {
+        this.memberRepository = memberRepository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.maxWait = maxWait;
+
+        int size = threads > 0 ? threads : dataSourcePools.getPrimary().getMaximumPoolSize();
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        this.pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, queue,
+                new CustomizableThreadFactory("member-repository-"), new ThreadPoolExecutor.AbortPolicy());
+
+        //executor.active / executor.queued / executor.pool.size {name=member-repository}
+        new ExecutorServiceMetrics(pool, "member-repository", Tags.empty()).bindTo(meterRegistry);
+        this.queueWait = Timer.builder("datajpa.repository.async.wait")
+                .description("Time async repository calls waited for a thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedFull = Counter.builder("datajpa.repository.async.rejected")
+                .tag("reason", "full")
+                .register(meterRegistry);
+        this.rejectedExpired = Counter.builder("datajpa.repository.async.rejected")
+                .tag("reason", "expired")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Optional<MemberDto>> findMemberDto(Long id) {
+        return query(repository -> repository.findById(id).map(MemberDto::new));
+    }
+
+    public CompletableFuture<Page<MemberDto>> findMemberDtoPage(Pageable pageable) {
+        return query(repository -> repository.findMemberDtoPage(pageable));
+    }
+
+    //엔티티가 필요 없으므로 캐시를 거치는 findCachedByUsername 으로 읽는다
+    public CompletableFuture<List<MemberDto>> findByUsername(String username) {
+        return query(repository -> repository.findCachedByUsername(username).stream()
+                .map(MemberDto::new)
+                .collect(Collectors.toList()));
+    }
+
+    //query 는 readOnly 트랜잭션 안에서 실행된다. 엔티티를 그대로 돌려주지 말고 안에서 필요한 값으로 바꿀 것
+    public <T> CompletableFuture<T> query(Function<MemberRepository, T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        //호출한 스레드가 방금 커밋한 쓰기를 작업 스레드에서도 primary 에서 읽도록
+        Long lastWrite = ReadWriteRoutingDataSource.lastWrite();
+        try {
+            pool.execute(() -> {
+                long waited = System.nanoTime() - submitted;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                if (future.isDone()) {
+                    return;
+                }
+                //호출한 쪽이 이미 타임아웃 났을 만큼 기다린 작업은 커넥션을 잡기 전에 버린다
+                if (!maxWait.isZero() && waited > maxWait.toNanos()) {
+                    rejectedExpired.increment();
+                    future.completeExceptionally(new TaskRejectedException(
+                            "waited " + TimeUnit.NANOSECONDS.toMillis(waited) + "ms for a member repository thread"));
+                    return;
+                }
+                ReadWriteRoutingDataSource.restoreLastWrite(lastWrite);
+                try {
+                    future.complete(readOnly.execute(status -> query.apply(memberRepository)));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    ReadWriteRoutingDataSource.forgetWrites();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedFull.increment();
+            future.completeExceptionally(new TaskRejectedException("member repository bulkhead is full", e));
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,206 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.counter.RowCounters;
+import study.datajpa.event.BulkUpdatedEvent;
+import study.datajpa.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+//Page 조회의 count 쿼리 결과를 (쿼리 + 파라미터) 단위로 캐시한다.
+//엔티티가 바뀌면 트랜잭션이 끝난 뒤 그 엔티티의 count 를 전부 무효화하고,
+//같은 트랜잭션 안에서 바꾼 엔티티는 캐시를 타지 않고 바로 count 쿼리를 날린다
+@Component
+public class CountCache implements MeterBinder {
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final RowCounters rowCounters;
+    private final Duration ttl;
+    private final boolean estimated;
+
+    private final Map<Key, Entry> counts = new ConcurrentHashMap<>();
+    private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder estimates = new LongAdder();
+
+    public CountCache(EntityManager em,
+                      JdbcTemplate jdbcTemplate,
+                      RowCounters rowCounters,
+                      @Value("${datajpa.count-cache.ttl:30s}") Duration ttl,
+                      @Value("${datajpa.count-cache.estimated:false}") boolean estimated) {
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rowCounters = rowCounters;
+        this.ttl = ttl;
+        this.estimated = estimated;
+    }
+
+    public long count(Class<?> entityType, String query, List<?> params, LongSupplier countQuery) {
+        flushIfNeeded();
+        if (dirtyTypes().contains(entityType)) {
+            misses.increment();
+            return countQuery.getAsLong();
+        }
+
+        Key key = new Key(entityType, query, params);
+        long generation = generation(entityType).get();
+        long now = System.nanoTime();
+
+        Entry entry = counts.get(key);
+        if (entry != null && entry.generation == generation && now < entry.expiresAt) {
+            hits.increment();
+            return entry.count;
+        }
+
+        misses.increment();
+        long count = countQuery.getAsLong();
+        counts.put(key, new Entry(count, generation, now + ttl.toNanos()));
+        return count;
+    }
+
+    //조건 없는 전체 count. RowCounters 가 세는 엔티티(Member, Team)는 그 카운터로 답하고,
+    //나머지는 estimated 모드면 테이블 통계(H2 ROW_COUNT_ESTIMATE)를 읽는다
+    public long countAll(Class<?> entityType, String table, LongSupplier countQuery) {
+        if (rowCounters.hasCounter(entityType)) {
+            return rowCounters.count(entityType, countQuery);
+        }
+        if (estimated) {
+            flushIfNeeded();
+            if (!dirtyTypes().contains(entityType)) {
+                Long estimate = estimate(table);
+                if (estimate != null) {
+                    estimates.increment();
+                    return estimate;
+                }
+            }
+        }
+        return count(entityType, "select count(*) from " + table, List.of(), countQuery);
+    }
+
+    public void invalidate(Class<?> entityType) {
+        generation(entityType).incrementAndGet();
+        counts.keySet().removeIf(key -> key.entityType.equals(entityType));
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        changed(event.getEntityType());
+    }
+
+    @EventListener
+    public void onBulkUpdated(BulkUpdatedEvent event) {
+        changed(event.getEntityType());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("datajpa.count.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .description("Page count lookups served from the cache")
+                .register(registry);
+        FunctionCounter.builder("datajpa.count.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .description("Page count lookups that ran a count query")
+                .register(registry);
+        FunctionCounter.builder("datajpa.count.cache.requests", estimates, LongAdder::doubleValue)
+                .tag("result", "estimated")
+                .description("Page count lookups answered from table statistics")
+                .register(registry);
+        Gauge.builder("datajpa.count.cache.size", counts, Map::size)
+                .register(registry);
+    }
+
+    //트랜잭션 안이면 변경 내용을 먼저 반영해 이벤트를 받는다. (원래 count 쿼리의 auto flush 와 같은 역할)
+    //readOnly 트랜잭션은 FlushMode.MANUAL 이므로 내보내지 않는다
+    private void flushIfNeeded() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+
+    private void changed(Class<?> entityType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(entityType);
+            return;
+        }
+
+        Set<Class<?>> dirty = dirtyTypes();
+        if (dirty.isEmpty()) {
+            TransactionSynchronizationManager.bindResource(this, dirty);
+            TransactionSynchronizationManager.registerSynchronization(new DirtyTypesSynchronization(dirty));
+        }
+        dirty.add(entityType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Class<?>> dirtyTypes() {
+        Set<Class<?>> dirty = (Set<Class<?>>) TransactionSynchronizationManager.getResource(this);
+        return dirty != null ? dirty : new HashSet<>();
+    }
+
+    private AtomicLong generation(Class<?> entityType) {
+        return generations.computeIfAbsent(entityType, type -> new AtomicLong());
+    }
+
+    private Long estimate(String table) {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "select row_count_estimate from information_schema.tables where table_name = ?",
+                    Long.class, table.toUpperCase());
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class DirtyTypesSynchronization implements TransactionSynchronization {
+
+        private final Set<Class<?>> dirty;
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CountCache.this);
+            dirty.forEach(CountCache.this::invalidate);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+        private final Class<?> entityType;
+        private final String query;
+        private final List<?> params;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long count;
+        private final long generation;
+        private final long expiresAt;
+    }
+}
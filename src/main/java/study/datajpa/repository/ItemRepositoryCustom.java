@@ -0,0 +1,13 @@
+package study.datajpa.repository;
+
+import study.datajpa.entity.Item;
+
+//save() 는 id 가 채워진 Item 을 merge 하면서 select 를 먼저 날리므로, 대량 적재는 이쪽을 쓴다
+public interface ItemRepositoryCustom {
+
+    //무조건 insert. 이미 있는 id 면 예외
+    int insertAll(Iterable<Item> items);
+
+    //없는 id 만 insert, 있는 id 는 그대로 둔다
+    int upsertAll(Iterable<Item> items);
+}
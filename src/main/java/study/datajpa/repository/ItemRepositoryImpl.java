@@ -0,0 +1,83 @@
+package study.datajpa.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Item;
+import study.datajpa.event.BulkUpdatedEvent;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    private static final String INSERT = "insert into item (id, created_date) values (?, ?)";
+
+    //Item 에는 created_date 말고 바꿀 컬럼이 없으므로 이미 있는 행은 건드리지 않는다
+    private static final String UPSERT = "merge into item t"
+            + " using (select cast(? as varchar(255)) as id, cast(? as timestamp) as created_date) s"
+            + " on (t.id = s.id)"
+            + " when not matched then insert (id, created_date) values (s.id, s.created_date)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final int batchSize;
+
+    public ItemRepositoryImpl(JdbcTemplate jdbcTemplate,
+                              ApplicationEventPublisher publisher,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional
+    public int insertAll(Iterable<Item> items) {
+        return executeBatches(INSERT, items);
+    }
+
+    @Override
+    @Transactional
+    public int upsertAll(Iterable<Item> items) {
+        return executeBatches(UPSERT, items);
+    }
+
+    private int executeBatches(String sql, Iterable<Item> items) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Item> chunk = new ArrayList<>(batchSize);
+        int rows = 0;
+        for (Item item : items) {
+            chunk.add(item);
+            if (chunk.size() == batchSize) {
+                rows += executeBatch(sql, chunk, now);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            rows += executeBatch(sql, chunk, now);
+        }
+
+        publisher.publishEvent(new BulkUpdatedEvent(Item.class, rows));
+        return rows;
+    }
+
+    private int executeBatch(String sql, List<Item> chunk, Timestamp now) {
+        int[][] counts = jdbcTemplate.batchUpdate(sql, chunk, chunk.size(), (ps, item) -> {
+            ps.setString(1, item.getId());
+            ps.setTimestamp(2, item.getCreatedDate() != null ? Timestamp.valueOf(item.getCreatedDate()) : now);
+        });
+
+        int rows = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                //드라이버가 건수를 모르면 SUCCESS_NO_INFO(-2) 를 준다
+                rows += count > 0 ? count : 0;
+            }
+        }
+        return rows;
+    }
+}
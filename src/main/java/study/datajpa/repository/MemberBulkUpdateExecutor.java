@@ -0,0 +1,206 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+//bulkAgePlus 를 id 구간(chunk)으로 나눠 구간마다 짧은 트랜잭션으로 실행한다.
+//한 번의 UPDATE 가 테이블 전체에 락을 오래 잡지 않도록 하기 위함.
+//각 구간은 별도 트랜잭션에서 커밋되므로 호출하는 쪽 트랜잭션 밖에서 부르는 것이 좋다.
+//age + 1 은 두 번 실행하면 안 되므로 UPDATE 가 롤백된 것이 확실한 일시적 실패(락/타임아웃/커넥션)만 다시 시도한다
+@Slf4j
+@Component
+public class MemberBulkUpdateExecutor {
+
+    private final MemberRepository memberRepository;
+    private final EntityManager em;
+    private final TransactionTemplate chunkTransaction;
+    private final ExecutorService pool;
+    private final int chunkSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+
+    public MemberBulkUpdateExecutor(MemberRepository memberRepository,
+                                    EntityManager em,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${datajpa.bulk-update.chunk-size:10000}") int chunkSize,
+                                    @Value("${datajpa.bulk-update.threads:4}") int threads,
+                                    @Value("${datajpa.bulk-update.max-attempts:3}") int maxAttempts,
+                                    @Value("${datajpa.bulk-update.backoff:200ms}") Duration backoff) {
+        this.memberRepository = memberRepository;
+        this.em = em;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.chunkSize = chunkSize;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+    }
+
+    public Result bulkAgePlus(int age) {
+        return bulkAgePlus(age, progress -> { });
+    }
+
+    public Result bulkAgePlus(int age, Consumer<Progress> listener) {
+        Long minId = memberRepository.findMinId();
+        Long maxId = memberRepository.findMaxId();
+        if (minId == null) {
+            return new Result(0, 0, Collections.emptyList(), Collections.emptyList());
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += chunkSize) {
+            ranges.add(new long[]{from, Math.min(from + chunkSize - 1, maxId)});
+        }
+
+        Progress progress = new Progress(ranges.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (long[] range : ranges) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                ChunkResult chunk = runChunk(age, range[0], range[1]);
+                synchronized (progress) {
+                    progress.chunkDone(range, chunk);
+                    listener.accept(progress);
+                }
+            }, pool));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        //clearAutomatically 와 같게, 호출한 쪽 영속성 컨텍스트에 남아 있을 수 있는 예전 값을 비운다
+        em.clear();
+
+        return new Result(progress.getUpdatedRows(), ranges.size(), progress.getFailedRanges(), progress.getUncertainRanges());
+    }
+
+    //UPDATE 문이 실패해서 롤백된 경우만 backoff 만큼씩 늘려가며 다시 시도한다.
+    //UPDATE 가 끝난 뒤(커밋 중이나 afterCommit)의 실패는 커밋됐는지 알 수 없으므로 다시 시도하지 않고 uncertain 으로 돌려준다
+    private ChunkResult runChunk(int age, long fromId, long toId) {
+        for (int attempt = 1; ; attempt++) {
+            AtomicBoolean executed = new AtomicBoolean();
+            try {
+                Integer updated = chunkTransaction.execute(status -> {
+                    int rows = memberRepository.bulkAgePlusInRange(age, fromId, toId);
+                    executed.set(true);
+                    return rows;
+                });
+                return ChunkResult.updated(updated);
+            } catch (RuntimeException e) {
+                if (executed.get()) {
+                    log.error("bulkAgePlus chunk [{}, {}] failed after the update ran, it may have been committed", fromId, toId, e);
+                    return ChunkResult.UNCERTAIN;
+                }
+                if (!isTransient(e) || attempt >= maxAttempts) {
+                    log.error("bulkAgePlus chunk [{}, {}] failed after {} attempts", fromId, toId, attempt, e);
+                    return ChunkResult.FAILED;
+                }
+                log.warn("bulkAgePlus chunk [{}, {}] failed (attempt {}), retrying", fromId, toId, attempt, e);
+                try {
+                    Thread.sleep(backoff.toMillis() * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return ChunkResult.FAILED;
+                }
+            }
+        }
+    }
+
+    //락 대기 시간 초과, 데드락, 쿼리 타임아웃, 커넥션/트랜잭션 시작 실패
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Getter
+    @ToString
+    public static class Progress {
+
+        private final int totalChunks;
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicLong updatedRows = new AtomicLong();
+        private final List<long[]> failedRanges = Collections.synchronizedList(new ArrayList<>());
+        private final List<long[]> uncertainRanges = Collections.synchronizedList(new ArrayList<>());
+
+        Progress(int totalChunks) {
+            this.totalChunks = totalChunks;
+        }
+
+        void chunkDone(long[] range, ChunkResult chunk) {
+            completedChunks.incrementAndGet();
+            if (chunk.uncertain) {
+                uncertainRanges.add(range);
+            } else if (chunk.updated == null) {
+                failedRanges.add(range);
+            } else {
+                updatedRows.addAndGet(chunk.updated);
+            }
+        }
+
+        public int getCompletedChunks() {
+            return completedChunks.get();
+        }
+
+        public long getUpdatedRows() {
+            return updatedRows.get();
+        }
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Result {
+
+        private final long updatedRows;
+        private final int chunks;
+        //재시도 후에도 실패한 [fromId, toId] 구간. 롤백됐으므로 다시 실행해도 된다
+        private final List<long[]> failedRanges;
+        //UPDATE 뒤에 실패해서 반영됐는지 알 수 없는 구간. 다시 실행하기 전에 확인해야 한다
+        private final List<long[]> uncertainRanges;
+
+        public boolean isCompleted() {
+            return failedRanges.isEmpty() && uncertainRanges.isEmpty();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class ChunkResult {
+
+        static final ChunkResult FAILED = new ChunkResult(null, false);
+        static final ChunkResult UNCERTAIN = new ChunkResult(null, true);
+
+        private final Integer updated;
+        private final boolean uncertain;
+
+        static ChunkResult updated(Integer updated) {
+            return new ChunkResult(updated, false);
+        }
+    }
+}
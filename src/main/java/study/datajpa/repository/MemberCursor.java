@@ -0,0 +1,89 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import study.datajpa.entity.Member;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//keyset 페이징의 위치. (정렬키, member_id) 로 마지막으로 읽은 행을 가리킨다.
+//username 은 null 일 수 있다. 토큰에는 값 앞에 '=' 를 붙이고 null 은 빈 칸으로 남겨 "null" 이라는 username 과 구분한다
+@Getter
+public class MemberCursor {
+
+    public enum Key {
+        USERNAME("username"),
+        AGE("age");
+
+        private final String property;
+
+        Key(String property) {
+            this.property = property;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+    }
+
+    private final Key key;
+    private final Object value;
+    private final Long id;
+
+    private MemberCursor(Key key, Object value, Long id) {
+        this.key = key;
+        this.value = value;
+        this.id = id;
+    }
+
+    public static MemberCursor first(Key key) {
+        return new MemberCursor(key, null, null);
+    }
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    public MemberCursor next(Member last) {
+        Object lastValue = key == Key.USERNAME ? last.getUsername() : last.getAge();
+        return new MemberCursor(key, lastValue, last.getId());
+    }
+
+    public String encode() {
+        String raw = key.name() + "|" + id + "|" + (value == null ? "" : "=" + value);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MemberCursor decode(String token) {
+        String[] parts;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            parts = raw.split("\\|", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + token, e);
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+
+        try {
+            Key key = Key.valueOf(parts[0]);
+            Long id = Long.valueOf(parts[1]);
+            if (parts[2].isEmpty()) {
+                if (key != Key.USERNAME) {
+                    throw new IllegalArgumentException("invalid cursor: " + token);
+                }
+                return new MemberCursor(key, null, id);
+            }
+            if (!parts[2].startsWith("=")) {
+                throw new IllegalArgumentException("invalid cursor: " + token);
+            }
+            String raw = parts[2].substring(1);
+            Object value = key == Key.USERNAME ? raw : (Object) Integer.valueOf(raw);
+            return new MemberCursor(key, value, id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + token, e);
+        }
+    }
+}
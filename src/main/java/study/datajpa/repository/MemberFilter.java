@@ -0,0 +1,85 @@
+package study.datajpa.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+//MemberSpec 의 username/teamName 조건을 Criteria 트리 없이 조합한다.
+//어떤 조건이 들어 있는지(shape)별 JPQL 은 클래스 로딩 때 한 번만 만들어 두고 호출마다 바인드 값만 바꾸므로,
+//Hibernate 도 같은 문자열로 쿼리 플랜 캐시를 탄다. 조건이 늘면 shape 도 2배씩 늘어나니 조건은 몇 개로만 둔다
+//
+//  memberRepository.search(MemberFilter.create().username("m1").teamName("teamA"));
+public final class MemberFilter {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+
+    private static final String[] QUERIES = new String[1 << 2];
+
+    static {
+        for (int shape = 0; shape < QUERIES.length; shape++) {
+            QUERIES[shape] = compile(shape);
+        }
+    }
+
+    private String username;
+    private String teamName;
+
+    private MemberFilter() {
+    }
+
+    public static MemberFilter create() {
+        return new MemberFilter();
+    }
+
+    //null 이면 조건을 걸지 않는다 (MemberSpec.username 도 같다)
+    public MemberFilter username(String username) {
+        this.username = username;
+        return this;
+    }
+
+    //MemberSpec.teamName 과 같이 빈 문자열이면 조건을 걸지 않는다
+    public MemberFilter teamName(String teamName) {
+        this.teamName = StringUtils.hasText(teamName) ? teamName : null;
+        return this;
+    }
+
+    public TypedQuery<Member> createQuery(EntityManager em) {
+        TypedQuery<Member> query = em.createQuery(QUERIES[shape()], Member.class);
+        if (username != null) {
+            query.setParameter("username", username);
+        }
+        if (teamName != null) {
+            query.setParameter("teamName", teamName);
+        }
+        return query;
+    }
+
+    //JpaSpecificationExecutor 의 다른 Specification 과 섞어 써야 할 때. 이쪽은 매번 Criteria 를 만든다
+    public Specification<Member> toSpecification() {
+        return Specification.where(MemberSpec.username(username)).and(MemberSpec.teamName(teamName));
+    }
+
+    int shape() {
+        return (username != null ? USERNAME : 0) | (teamName != null ? TEAM_NAME : 0);
+    }
+
+    private static String compile(int shape) {
+        StringBuilder jpql = new StringBuilder("select m from Member m");
+        if ((shape & TEAM_NAME) != 0) {
+            jpql.append(" join m.team t");
+        }
+        String glue = " where ";
+        if ((shape & USERNAME) != 0) {
+            jpql.append(glue).append("m.username = :username");
+            glue = " and ";
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            jpql.append(glue).append("t.name = :teamName");
+        }
+        return jpql.toString();
+    }
+}
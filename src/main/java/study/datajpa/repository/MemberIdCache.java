@@ -0,0 +1,55 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.event.BulkUpdatedEvent;
+import study.datajpa.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.Optional;
+
+//id -> MemberSnapshot near-cache. 컨트롤러 파라미터(/members/{id}, /members2/{id})를 엔티티 조회 없이 채운다.
+//없는 id 도 missing-ttl 동안 캐시한다 (그 id 로 insert 되면 무효화된다). 무효화는 SnapshotCache
+@Component
+public class MemberIdCache implements MeterBinder {
+
+    private final MemberRepository memberRepository;
+    private final SnapshotCache<Long, Optional<MemberSnapshot>> cache;
+
+    public MemberIdCache(MemberRepository memberRepository,
+                         @Value("${datajpa.id-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${datajpa.id-cache.ttl:10m}") Duration ttl,
+                         @Value("${datajpa.id-cache.missing-maximum-size:1000}") long missingMaximumSize,
+                         @Value("${datajpa.id-cache.missing-ttl:10s}") Duration missingTtl) {
+        this.memberRepository = memberRepository;
+        this.cache = new SnapshotCache<>("member.id", maximumSize, ttl, missingMaximumSize, missingTtl,
+                (id, username) -> id, Optional::stream, false);
+    }
+
+    public Optional<MemberSnapshot> findById(Long id) {
+        return cache.get(id, memberRepository::findSnapshotById);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        cache.onEntityChanged(event);
+    }
+
+    @EventListener
+    public void onBulkUpdated(BulkUpdatedEvent event) {
+        cache.onBulkUpdated(event);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry);
+    }
+}
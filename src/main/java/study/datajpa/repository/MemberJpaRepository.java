@@ -1,8 +1,14 @@
 package study.datajpa.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.concurrency.RetryOnOptimisticLock;
+import study.datajpa.counter.RowCounters;
 import study.datajpa.entity.Member;
+import study.datajpa.event.BulkUpdatedEvent;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -16,6 +22,15 @@ public class MemberJpaRepository   {
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private CountCache countCache;
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    private RowCounters rowCounters;
+
     public Member save(Member member){
         em.persist(member);
         return member;
@@ -36,15 +51,26 @@ public class MemberJpaRepository   {
 
     }
 
+    //락 없이 dirty checking 으로 수정하고, 커밋 때 version 이 바뀌어 있으면 처음부터 다시 실행
+    @Transactional
+    @RetryOnOptimisticLock
     public void memberUpdate(Long id,String username,int age){
         Member member1 = find(id);
         member1.setUsername(username);
         member1.setAge(age);
     }
 
+    //읽은 값에 더해서 쓰므로 충돌을 무시하면 갱신이 사라진다. findLockByUsername(PESSIMISTIC_WRITE) 대신 쓰는 방식
+    @Transactional
+    @RetryOnOptimisticLock
+    public void agePlus(Long id, int delta){
+        Member member = find(id);
+        member.setAge(member.getAge() + delta);
+    }
+
     public long count(){
-        return em.createQuery("select count(m) from Member m", Long.class)
-                .getSingleResult();
+        return rowCounters.count(Member.class, () -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult());
 
     }
 
@@ -81,16 +107,21 @@ public class MemberJpaRepository   {
     }
 
     public long totalCount(int age){
-        return em.createQuery("select count(m) from Member m where m.age = :age",Long.class)
-                .setParameter("age",age)
-                .getSingleResult();
+        String query = "select count(m) from Member m where m.age = :age";
+        return countCache.count(Member.class, query, List.of(age),
+                () -> em.createQuery(query, Long.class)
+                        .setParameter("age", age)
+                        .getSingleResult());
     }
 
     public int bulkAgePlus(int age){
 
-        return em.createQuery("update Member m set m.age = m.age+1 where m.age >= :age")
+        int resultCount = em.createQuery("update Member m set m.age = m.age+1, m.version = m.version+1 where m.age >= :age")
                 .setParameter("age",age)
                 .executeUpdate();
+
+        publisher.publishEvent(new BulkUpdatedEvent(Member.class, resultCount));
+        return resultCount;
     }
 
 }
@@ -1,12 +1,12 @@
 package study.datajpa.repository;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import study.datajpa.datasource.ReadFromPrimary;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSnapshot;
 import study.datajpa.entity.Member;
 
 import javax.persistence.Entity;
@@ -16,6 +16,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 //JpaspecificationExecutor 은 실무에서 안쓰는게 좋음. 지옥을 맛보게 됨
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, JpaSpecificationExecutor {
@@ -26,6 +27,7 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
 
    // @Query(name = "Member.findByUsername")
+    //영속 엔티티가 필요 없으면 findCachedByUsername 을 쓴다
     List<Member> findByUsername(@Param("username") String username);
 
     List<Member> findTop3HelloBy();
@@ -39,22 +41,30 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
-
     @Query("select m from Member m where m.username in :names")
     List<Member> findByNames(@Param("names") Collection<String> names);
 
 
     List<Member> findListByUsername(String username);
+    //값만 필요하면 findCachedMemberByUsername, findCachedOptionalByUsername
     Member findMemberByUsername(String username);
     Optional<Member> findOptionalByUsername(String username);
 
-    @Query(value = "select m from Member m")
-    Page<Member> findByAge(int age, Pageable pageable);
-
     @Modifying(clearAutomatically = true)
-    @Query(value = "update Member m set m.age = m.age + 1 where m.age >= :age")
+    @Query(value = "update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age")
     int bulkAgePlus(@Param("age")int age);
 
+    //MemberBulkUpdateExecutor 가 id 구간별로 나눠서 호출
+    @Modifying(clearAutomatically = true)
+    @Query(value = "update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age and m.id between :fromId and :toId")
+    int bulkAgePlusInRange(@Param("age") int age, @Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("select min(m.id) from Member m")
+    Long findMinId();
+
+    @Query("select max(m.id) from Member m")
+    Long findMaxId();
+
 
     @Query("select m from Member m left join fetch m.team t")
     List<Member> findMemberFetchJoin();
@@ -72,25 +82,42 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     List<Member> findEntityGraphByUsername(@Param("username")String username);
 
     //조회에서 많은 트래픽을 잡아먹는것은 복잡한 쿼리에서 나오니 이런 최적화는 비중이 크지않다
+    //값만 읽는 용도라면 쿼리도 없는 findCachedMemberByUsername 을 쓴다
     @QueryHints(value = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
     Member findReadOnlyByUsername(String username);
 
 
+    //MemberUsernameCache 로더. 캐시에 복제 지연된 값이 들어가지 않도록 primary 에서 읽는다
+    @ReadFromPrimary
+    @Query("select new study.datajpa.dto.MemberSnapshot(m.id, m.username, m.age, t.id, t.name)"
+            + " from Member m left join m.team t where m.username = :username")
+    List<MemberSnapshot> findSnapshotsByUsername(@Param("username") String username);
+
+    //MemberIdCache 로더
+    @ReadFromPrimary
+    @Query("select new study.datajpa.dto.MemberSnapshot(m.id, m.username, m.age, t.id, t.name)"
+            + " from Member m left join m.team t where m.id = :id")
+    Optional<MemberSnapshot> findSnapshotById(@Param("id") Long id);
+
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     List<Member> findLockByUsername(String username);
 
 
-    <T> List<T> findProjectionsByUsername(@Param("username") String username,Class<T> type);
+    //findProjectionsByUsername 에서 생성된 구현이 없는 타입(엔티티, 일반 DTO, 인터페이스)은 스프링 데이터의 동적 프로젝션으로 넘긴다
+    <T> List<T> findDynamicProjectionsByUsername(@Param("username") String username, Class<T> type);
 
     @Query(value = "select * from member where username = ?",nativeQuery = true)
     Member findByNativeQuery(String username);
 
-
-    @Query(value = "select m.member_id as id, m.username, t.name as teamName from member m left join team t" ,
-            countQuery = "select count(*) from member",
-            nativeQuery = true)
-    Page<MemberProjection> findByNativeProjection(Pageable pageable);
-
+    //전체 export 용. DTO 로 바로 받으므로 영속성 컨텍스트에 엔티티가 쌓이지 않고, fetchSize 단위로 커서를 읽는다
+    //트랜잭션 안에서 호출하고 다 쓴 뒤 close 해야 한다
+    @QueryHints(value = {
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t")
+    Stream<MemberDto> streamMemberDto();
 
 
 }
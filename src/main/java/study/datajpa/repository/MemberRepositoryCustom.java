@@ -1,9 +1,47 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSnapshot;
 import study.datajpa.entity.Member;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
+
+    //count 쿼리 없이 cursor 다음 size 개를 가져온다
+    Slice<Member> findAfter(MemberCursor cursor, int size);
+
+    //count 는 CountCache 를 거친다
+    Page<Member> findByAge(int age, Pageable pageable);
+
+    //@GeneratedProjection 타입은 필요한 컬럼만 골라 생성된 구현에 바로 담는다 (프록시 없음). 나머지 타입은 예전처럼 스프링 데이터가 처리한다
+    <T> List<T> findProjectionsByUsername(String username, Class<T> type);
+
+    Page<MemberProjection> findByNativeProjection(Pageable pageable);
+
+    //엔티티를 올리지 않고 팀 이름까지 한 번의 조인으로 가져온다. 정렬은 m 의 필드 기준, total 은 count() 와 같은 RowCounters
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
+    int bulkInsert(Iterable<Member> members);
+
+    //MemberSpec 조건을 미리 만들어 둔 JPQL 로 조회
+    List<Member> search(MemberFilter filter);
+
+    //findByUsername, findOptionalByUsername, findMemberByUsername/findReadOnlyByUsername 의 값 전용 버전.
+    //영속 엔티티가 필요 없으면 이쪽을 쓴다. MemberUsernameCache 를 거치므로 캐시에 있으면 쿼리가 없다
+    List<MemberSnapshot> findCachedByUsername(String username);
+
+    //두 명 이상이면 IncorrectResultSizeDataAccessException
+    Optional<MemberSnapshot> findCachedOptionalByUsername(String username);
+
+    //없으면 null, 두 명 이상이면 IncorrectResultSizeDataAccessException
+    MemberSnapshot findCachedMemberByUsername(String username);
+
+    //JpaRepository.count() 대신 RowCounters 로 답한다 (count 쿼리 없음)
+    long count();
 }
@@ -1,17 +1,76 @@
 package study.datajpa.repository;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import study.datajpa.counter.RowCounters;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSnapshot;
 import study.datajpa.entity.Member;
+import study.datajpa.projection.ProjectionMaterializer;
+import study.datajpa.projection.ProjectionMaterializers;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private static final String FIND_BY_AGE = "select m from Member m where m.age = :age";
+    private static final String COUNT_BY_AGE = "select count(m) from Member m where m.age = :age";
+    private static final String MEMBER_DTO =
+            "select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m left join m.team t";
+    private static final String NATIVE_PROJECTION =
+            "select m.member_id as id, m.username, t.name as teamName from member m left join team t on m.team_id = t.team_id";
+
 
     private final EntityManager em;
+    private final CountCache countCache;
+    private final RowCounters rowCounters;
+    private final int batchSize;
+    private final ProjectionMaterializers materializers;
+    //자기 자신을 주입받으므로 처음 쓸 때 찾는다
+    private final ObjectProvider<MemberRepository> memberRepository;
+    //MemberUsernameCache 도 MemberRepository 를 주입받으므로 같은 이유로 나중에 찾는다
+    private final ObjectProvider<MemberUsernameCache> usernameCache;
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+    //프로젝션 타입별 JPQL
+    private final Map<Class<?>, String> projectionQueries = new ConcurrentHashMap<>();
+
+    public MemberRepositoryImpl(EntityManager em,
+                                CountCache countCache,
+                                RowCounters rowCounters,
+                                ProjectionMaterializers materializers,
+                                ObjectProvider<MemberRepository> memberRepository,
+                                ObjectProvider<MemberUsernameCache> usernameCache,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.em = em;
+        this.countCache = countCache;
+        this.rowCounters = rowCounters;
+        this.materializers = materializers;
+        this.memberRepository = memberRepository;
+        this.usernameCache = usernameCache;
+        this.batchSize = batchSize;
+    }
 
 
     @Override
@@ -19,4 +78,197 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    @Override
+    public Slice<Member> findAfter(MemberCursor cursor, int size) {
+        String key = "m." + cursor.getKey().getProperty();
+
+        //offset 대신 (key, id) 비교로 시작 위치를 찾는다. size+1 개를 읽어 다음 페이지 여부를 판단.
+        //null 은 맨 앞에 온다. 마지막 행의 키가 null 이면 남은 null 과 null 이 아닌 행 전부가 다음이다
+        String seek;
+        if (cursor.isFirst()) {
+            seek = "";
+        } else if (cursor.getValue() == null) {
+            seek = " where (" + key + " is null and m.id > :id) or " + key + " is not null";
+        } else {
+            seek = " where " + key + " > :value or (" + key + " = :value and m.id > :id)";
+        }
+        String jpql = "select m from Member m" + seek + " order by " + key + " asc nulls first, m.id asc";
+
+        TypedQuery<Member> query = em.createQuery(jpql, Member.class)
+                .setMaxResults(size + 1);
+        if (!cursor.isFirst()) {
+            query.setParameter("id", cursor.getId());
+            if (cursor.getValue() != null) {
+                query.setParameter("value", cursor.getValue());
+            }
+        }
+
+        List<Member> content = new ArrayList<>(query.getResultList());
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content.remove(size);
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    public Page<Member> findByAge(int age, Pageable pageable) {
+        TypedQuery<Member> query = em.createQuery(QueryUtils.applySorting(FIND_BY_AGE, pageable.getSort(), "m"), Member.class)
+                .setParameter("age", age);
+        List<Member> content = paged(query, pageable).getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.count(Member.class, COUNT_BY_AGE, List.of(age),
+                        () -> em.createQuery(COUNT_BY_AGE, Long.class)
+                                .setParameter("age", age)
+                                .getSingleResult()));
+    }
+
+    //프래그먼트 메서드라 리포지토리 기본 @Transactional(readOnly = true) 이 적용되지 않는다
+    @Override
+    @Transactional(readOnly = true)
+    public <T> List<T> findProjectionsByUsername(String username, Class<T> type) {
+        Optional<ProjectionMaterializer<T>> materializer = materializers.find(type);
+        if (materializer.isEmpty()) {
+            //생성된 구현이 없으면 스프링 데이터가 타입에 맞춰 필요한 컬럼만 조회한다
+            return memberRepository.getObject().findDynamicProjectionsByUsername(username, type);
+        }
+
+        ProjectionMaterializer<T> projection = materializer.get();
+        String jpql = projectionQueries.computeIfAbsent(type,
+                key -> ProjectionMaterializers.select(projection, "Member", "m") + " where m.username = :username");
+        List<?> rows = em.createQuery(jpql)
+                .setParameter("username", username)
+                .getResultList();
+
+        List<T> content = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            //컬럼이 하나면 Object[] 가 아니라 값 하나로 온다
+            content.add(projection.materialize(row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        }
+        return content;
+    }
+
+    @Override
+    public Page<MemberProjection> findByNativeProjection(Pageable pageable) {
+        Query query = em.createNativeQuery(QueryUtils.applySorting(NATIVE_PROJECTION, pageable.getSort(), "m"), Tuple.class);
+        List<Tuple> rows = paged(query, pageable).getResultList();
+
+        List<MemberProjection> content = materializers.find(MemberProjection.class)
+                .map(materializer -> materialize(materializer, rows))
+                .orElseGet(() -> rows.stream()
+                        .map(row -> projectionFactory.createProjection(MemberProjection.class, toMap(row)))
+                        .collect(Collectors.toList()));
+
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.countAll(Member.class, "member",
+                        () -> ((Number) em.createNativeQuery("select count(*) from member").getSingleResult()).longValue()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberDto> findMemberDtoPage(Pageable pageable) {
+        TypedQuery<MemberDto> query = em.createQuery(
+                QueryUtils.applySorting(MEMBER_DTO, pageable.getSort(), "m"), MemberDto.class);
+        List<MemberDto> content = paged(query, pageable).getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, this::count);
+    }
+
+    //batch_size 마다 flush(JDBC batch 로 insert) 하고 clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+    //호출한 쪽 트랜잭션에 참여하면 그쪽 영속성 컨텍스트도 비워지므로 단독으로 호출하는 것이 좋다
+    @Override
+    @Transactional
+    public int bulkInsert(Iterable<Member> members) {
+        int count = 0;
+        for (Member member : members) {
+            em.persist(member);
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    @Override
+    public List<Member> search(MemberFilter filter) {
+        return filter.createQuery(em).getResultList();
+    }
+
+    @Override
+    public List<MemberSnapshot> findCachedByUsername(String username) {
+        return usernameCache.getObject().findByUsername(username);
+    }
+
+    @Override
+    public Optional<MemberSnapshot> findCachedOptionalByUsername(String username) {
+        return usernameCache.getObject().findOneByUsername(username);
+    }
+
+    @Override
+    public MemberSnapshot findCachedMemberByUsername(String username) {
+        return usernameCache.getObject().findOneByUsername(username).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long count() {
+        return rowCounters.count(Member.class, () -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult());
+    }
+
+    private static <Q extends Query> Q paged(Q query, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return query;
+    }
+
+    //컬럼 위치는 첫 행의 별칭으로 한 번만 찾고, 나머지 행은 위치로 바로 읽는다
+    private static <T> List<T> materialize(ProjectionMaterializer<T> materializer, List<Tuple> rows) {
+        List<T> content = new ArrayList<>(rows.size());
+        int[] positions = null;
+        for (Tuple row : rows) {
+            if (positions == null) {
+                positions = positions(materializer.properties(), row);
+            }
+            Object[] values = new Object[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                values[i] = row.get(positions[i]);
+            }
+            content.add(materializer.materialize(values));
+        }
+        return content;
+    }
+
+    private static int[] positions(List<String> properties, Tuple row) {
+        List<TupleElement<?>> elements = row.getElements();
+        int[] positions = new int[properties.size()];
+        for (int i = 0; i < properties.size(); i++) {
+            positions[i] = -1;
+            for (int j = 0; j < elements.size(); j++) {
+                if (properties.get(i).equalsIgnoreCase(elements.get(j).getAlias())) {
+                    positions[i] = j;
+                }
+            }
+            if (positions[i] < 0) {
+                throw new IllegalStateException("column " + properties.get(i) + " is missing from the projection query");
+            }
+        }
+        return positions;
+    }
+
+    //H2 는 컬럼 별칭을 대문자로 돌려주므로 대소문자 구분 없이 찾는다
+    private static Map<String, Object> toMap(Tuple row) {
+        Map<String, Object> map = new LinkedCaseInsensitiveMap<>();
+        for (TupleElement<?> element : row.getElements()) {
+            map.put(element.getAlias(), row.get(element));
+        }
+        return map;
+    }
 }
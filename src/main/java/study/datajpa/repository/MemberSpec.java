@@ -23,9 +23,13 @@ public class MemberSpec {
         };
 
     }
+    //MemberFilter.username 과 같이 null 이면 조건을 걸지 않는다 (= null 은 아무 것도 찾지 못한다)
     public static Specification<Member> username(final String username) {
         return (Specification<Member>) (root, query, builder) -> {
 
+            if (username == null) {
+                return null;
+            }
             return builder.equal(root.get("username"),username);
 
 
@@ -0,0 +1,69 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.event.BulkUpdatedEvent;
+import study.datajpa.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+//findByUsername 계열 조회를 위한 username -> MemberSnapshot 목록 near-cache.
+//MemberRepository.findCachedByUsername, findCachedOptionalByUsername, findCachedMemberByUsername 이 이 캐시로 답한다.
+//엔티티를 돌려주는 findByUsername 등은 그대로 DB 를 읽으므로 값만 필요한 호출은 findCached* 로 옮긴다.
+//무효화는 SnapshotCache. username 이 바뀐 회원은 예전 username 의 목록에서도 지운다.
+//커밋과 무효화(afterCompletion) 사이의 아주 짧은 순간에는 다른 스레드가 이전 값을 볼 수 있다. 쓰는 쪽 메서드가 리턴한 뒤에는 보이지 않는다
+@Component
+public class MemberUsernameCache implements MeterBinder {
+
+    private final MemberRepository memberRepository;
+    private final SnapshotCache<String, List<MemberSnapshot>> cache;
+
+    public MemberUsernameCache(MemberRepository memberRepository,
+                               @Value("${datajpa.username-cache.maximum-size:10000}") long maximumSize,
+                               @Value("${datajpa.username-cache.ttl:10m}") Duration ttl,
+                               @Value("${datajpa.username-cache.missing-maximum-size:1000}") long missingMaximumSize,
+                               @Value("${datajpa.username-cache.missing-ttl:10s}") Duration missingTtl) {
+        this.memberRepository = memberRepository;
+        this.cache = new SnapshotCache<>("member.username", maximumSize, ttl, missingMaximumSize, missingTtl,
+                (id, username) -> username, List::stream, true);
+    }
+
+    public List<MemberSnapshot> findByUsername(String username) {
+        return cache.get(username, key -> List.copyOf(memberRepository.findSnapshotsByUsername(key)));
+    }
+
+    //findOptionalByUsername 처럼 두 명 이상이면 예외
+    public Optional<MemberSnapshot> findOneByUsername(String username) {
+        List<MemberSnapshot> snapshots = findByUsername(username);
+        if (snapshots.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, snapshots.size());
+        }
+        return snapshots.stream().findFirst();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        cache.onEntityChanged(event);
+    }
+
+    @EventListener
+    public void onBulkUpdated(BulkUpdatedEvent event) {
+        cache.onBulkUpdated(event);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry);
+    }
+}
@@ -0,0 +1,249 @@
+package study.datajpa.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.event.BulkUpdatedEvent;
+import study.datajpa.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+//MemberUsernameCache, MemberIdCache 가 같이 쓰는 MemberSnapshot near-cache 와 무효화.
+//회원/팀 변경은 트랜잭션마다 모아 두었다가 트랜잭션이 끝난 뒤(커밋된 뒤) 그 변경이 닿은 항목만 지우고, 벌크 수정이면 전부 지운다.
+//쓰기 트랜잭션 안에서는 아직 flush 하지 않은 자기 변경을 봐야 하므로 캐시를 타지 않고 바로 조회한다.
+//결과가 비어 있는 조회(없는 id, username)는 짧은 TTL 의 작은 캐시에 따로 담아서, 클라이언트가 보낸 값이 실제 항목을 밀어내지 못하게 한다
+class SnapshotCache<K, V> {
+
+    //한 트랜잭션에서 이보다 많은 회원/팀이 바뀌면(bulkInsert 등) 하나씩 찾지 않고 전부 비운다
+    private static final int MAX_PRECISE_INVALIDATIONS = 1000;
+
+    private final String name;
+    private final Cache<K, V> cache;
+    private final Cache<K, V> missing;
+    //바뀐 회원(id, username)의 키
+    private final BiFunction<Long, String, K> keyOf;
+    //값에 담긴 스냅샷들. 비어 있으면 missing 에 넣는다
+    private final Function<V, Stream<MemberSnapshot>> snapshots;
+    //키가 회원 변경으로 바뀔 수 있으면(username) 캐시에 담긴 회원 id -> 키를 기억해 두고 예전 키를 바로 지운다
+    private final boolean keyChangesWithMember;
+    private final Map<Long, K> keyByMember = new ConcurrentHashMap<>();
+
+    //무효화마다 증가. 로딩을 시작한 뒤 무효화가 있었다면 읽은 값이 이미 낡았을 수 있으니 캐시에 넣지 않는다
+    private final AtomicLong generation = new AtomicLong();
+
+    SnapshotCache(String name, long maximumSize, Duration ttl, long missingMaximumSize, Duration missingTtl,
+                  BiFunction<Long, String, K> keyOf, Function<V, Stream<MemberSnapshot>> snapshots,
+                  boolean keyChangesWithMember) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                //keyByMember 를 캐시와 같이 비우도록 호출한 스레드에서 바로 실행
+                .executor(Runnable::run)
+                .<K, V>removalListener(this::removed)
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(missingMaximumSize)
+                .expireAfterWrite(missingTtl)
+                .recordStats()
+                .build();
+        this.keyOf = keyOf;
+        this.snapshots = snapshots;
+        this.keyChangesWithMember = keyChangesWithMember;
+    }
+
+    V get(K key, Function<K, V> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.apply(key);
+        }
+
+        V cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = missing.getIfPresent(key);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        long started = generation.get();
+        V loaded = loader.apply(key);
+        synchronized (this) {
+            if (generation.get() == started) {
+                if (snapshots.apply(loaded).findAny().isPresent()) {
+                    cache.put(key, loaded);
+                    remember(key, loaded);
+                } else {
+                    missing.put(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    void invalidateAll() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+            missing.invalidateAll();
+            keyByMember.clear();
+        }
+    }
+
+    void onEntityChanged(EntityChangedEvent event) {
+        if (event.getEntityType() == Member.class) {
+            Long id = (Long) event.getId();
+            String username = ((Member) event.getEntity()).getUsername();
+            pending(invalidation -> invalidation.addMember(id, keyOf.apply(id, username)));
+        } else if (event.getEntityType() == Team.class && event.getType() != EntityChangedEvent.ChangeType.INSERT) {
+            //팀 이름은 그 팀 회원들의 스냅샷에 복사되어 있다
+            pending(invalidation -> invalidation.addTeam((Long) event.getId()));
+        }
+    }
+
+    void onBulkUpdated(BulkUpdatedEvent event) {
+        if (event.getEntityType() == Member.class || event.getEntityType() == Team.class) {
+            pending(Invalidation::clearAll);
+        }
+    }
+
+    //member.username, member.username.missing ...
+    void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        CaffeineCacheMetrics.monitor(registry, missing, name + ".missing");
+    }
+
+    private void apply(Invalidation invalidation) {
+        if (invalidation.clearAll) {
+            invalidateAll();
+            return;
+        }
+        synchronized (this) {
+            generation.incrementAndGet();
+            Set<K> keys = new HashSet<>(invalidation.keys);
+            if (keyChangesWithMember) {
+                for (Long memberId : invalidation.memberIds) {
+                    K previous = keyByMember.get(memberId);
+                    if (previous != null) {
+                        keys.add(previous);
+                    }
+                }
+            }
+            cache.invalidateAll(keys);
+            missing.invalidateAll(keys);
+            //팀 이름 변경은 드물어서 팀 id 로 훑는다
+            if (!invalidation.teamIds.isEmpty()) {
+                cache.asMap().values().removeIf(value -> snapshots.apply(value)
+                        .anyMatch(snapshot -> invalidation.teamIds.contains(snapshot.getTeamId())));
+            }
+        }
+    }
+
+    private void remember(K key, V value) {
+        if (keyChangesWithMember) {
+            snapshots.apply(value).forEach(snapshot -> keyByMember.put(snapshot.getId(), key));
+        }
+    }
+
+    //같은 키에 새 값이 들어가 있으면(교체) remember 가 이미 채웠으므로 건드리지 않는다
+    private void removed(K key, V value, RemovalCause cause) {
+        if (keyChangesWithMember && key != null && value != null && !cache.asMap().containsKey(key)) {
+            snapshots.apply(value).forEach(snapshot -> keyByMember.remove(snapshot.getId(), key));
+        }
+    }
+
+    //트랜잭션마다 Invalidation 하나. bindResource 는 REQUIRES_NEW 에서 바깥 트랜잭션 것이 보이므로
+    //그 트랜잭션의 동기화 목록에서 찾는다
+    private void pending(Consumer<Invalidation> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Invalidation invalidation = new Invalidation();
+            change.accept(invalidation);
+            apply(invalidation);
+            return;
+        }
+
+        Invalidation invalidation = current();
+        if (invalidation == null) {
+            invalidation = new Invalidation();
+            TransactionSynchronizationManager.registerSynchronization(invalidation);
+        }
+        change.accept(invalidation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Invalidation current() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof SnapshotCache.Invalidation
+                    && ((SnapshotCache<?, ?>.Invalidation) synchronization).owner() == this) {
+                return (Invalidation) synchronization;
+            }
+        }
+        return null;
+    }
+
+    //한 트랜잭션에서 바뀐 회원/팀. 트랜잭션이 끝나면(롤백이어도) 지운다
+    private class Invalidation implements TransactionSynchronization {
+
+        private final Set<K> keys = new HashSet<>();
+        private final Set<Long> memberIds = new HashSet<>();
+        private final Set<Long> teamIds = new HashSet<>();
+        private boolean clearAll;
+
+        SnapshotCache<K, V> owner() {
+            return SnapshotCache.this;
+        }
+
+        void addMember(Long id, K key) {
+            if (clearAll) {
+                return;
+            }
+            memberIds.add(id);
+            if (key != null) {
+                keys.add(key);
+            }
+            checkSize();
+        }
+
+        void addTeam(Long id) {
+            if (!clearAll) {
+                teamIds.add(id);
+                checkSize();
+            }
+        }
+
+        void clearAll() {
+            clearAll = true;
+            keys.clear();
+            memberIds.clear();
+            teamIds.clear();
+        }
+
+        private void checkSize() {
+            if (memberIds.size() + teamIds.size() > MAX_PRECISE_INVALIDATIONS) {
+                clearAll();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            apply(this);
+        }
+    }
+}
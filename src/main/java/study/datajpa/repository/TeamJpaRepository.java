@@ -1,6 +1,12 @@
 package study.datajpa.repository;
 
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.config.CacheConfig;
+import study.datajpa.counter.RowCounters;
 import study.datajpa.entity.Team;
 
 import javax.persistence.EntityManager;
@@ -14,13 +20,31 @@ public class TeamJpaRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private RowCounters rowCounters;
+
     public Team saveTeam(Team team){
         em.persist(team);
         return team;
     }
 
     public void delete(Team team){
+        Long id = team.getId();
         em.remove(team);
+
+        //Team 엔티티 캐시는 Hibernate 가 지우지만, 트랜잭션이 끝난 뒤 members 컬렉션 캐시도 확실히 비운다
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        Runnable evict = () -> sessionFactory.getCache().evictCollectionData(CacheConfig.TEAM_MEMBERS_REGION, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
     }
 
     public List<Team> findAll(){
@@ -35,8 +59,8 @@ public class TeamJpaRepository {
     }
 
     public long count(){
-        return em.createQuery("select count(t) from Team t",Long.class)
-                .getSingleResult();
+        return rowCounters.count(Team.class, () -> em.createQuery("select count(t) from Team t",Long.class)
+                .getSingleResult());
 
     }
 
@@ -0,0 +1,10 @@
+package study.datajpa.repository;
+
+public interface TeamRepositoryCustom {
+
+    //JpaRepository.count() 대신 RowCounters 로 답한다 (count 쿼리 없음)
+    long count();
+
+    //팀에 속한 회원 수
+    long countMembers(Long teamId);
+}
@@ -0,0 +1,31 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.counter.RowCounters;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+
+@RequiredArgsConstructor
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private final EntityManager em;
+    private final RowCounters rowCounters;
+
+    @Override
+    @Transactional(readOnly = true)
+    public long count() {
+        return rowCounters.count(Team.class, () -> em.createQuery("select count(t) from Team t", Long.class)
+                .getSingleResult());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countMembers(Long teamId) {
+        return rowCounters.countMembers(teamId, () -> em.createQuery(
+                        "select count(m) from Member m where m.team.id = :teamId", Long.class)
+                .setParameter("teamId", teamId)
+                .getSingleResult());
+    }
+}
@@ -0,0 +1,22 @@
+package study.datajpa.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.Repository;
+import study.datajpa.entity.TeamStats;
+
+import java.util.List;
+import java.util.Optional;
+
+//TeamStats 는 TeamStatsUpdater 만 쓰므로 조회 메서드만 연다
+public interface TeamStatsRepository extends Repository<TeamStats, Long> {
+
+    Optional<TeamStats> findById(Long teamId);
+
+    List<TeamStats> findAll(Sort sort);
+
+    Page<TeamStats> findAll(Pageable pageable);
+
+    List<TeamStats> findByMemberCountGreaterThanEqual(long memberCount, Sort sort);
+}
@@ -1,7 +1,9 @@
 package study.datajpa.repository;
 
 import org.springframework.beans.factory.annotation.Value;
+import study.datajpa.projection.GeneratedProjection;
 
+@GeneratedProjection
 public interface UsernameOnly {
 
  //   @Value("#{target.username + ' ' + target.age}")
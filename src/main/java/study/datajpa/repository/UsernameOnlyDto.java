@@ -1,5 +1,8 @@
 package study.datajpa.repository;
 
+import study.datajpa.projection.GeneratedProjection;
+
+@GeneratedProjection
 public class UsernameOnlyDto {
 
     private final String username;
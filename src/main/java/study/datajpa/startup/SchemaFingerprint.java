@@ -0,0 +1,157 @@
+package study.datajpa.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import study.datajpa.config.StartupProperties;
+
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//datajpa.startup.skip-validated-schema=true (fast-startup 프로필) 일 때 ddl-auto 를 정한다.
+//엔티티 클래스 파일로 만든 fingerprint 가 schema_fingerprint 에 기록된 값과 같으면 스키마를 만들지도 검증하지도 않고(none),
+//다르면 테이블이 이미 있으면 validate, 비어 있으면 create 로 시작한 뒤 시작이 끝나면 새 fingerprint 를 기록한다.
+//엔티티는 그대로 두고 DB 스키마만 바꿨다면 알 수 없으므로 schema_fingerprint 행을 지워서 다시 검증하게 한다
+@Slf4j
+@Component
+@EnableConfigurationProperties(StartupProperties.class)
+public class SchemaFingerprint implements HibernatePropertiesCustomizer {
+
+    private static final List<Class<?>> MAPPED = List.of(Entity.class, Embeddable.class, MappedSuperclass.class);
+    private static final String CREATE_TABLE = "create table if not exists schema_fingerprint"
+            + " (id int primary key, fingerprint varchar(64) not null, recorded_at timestamp not null)";
+    private static final String SELECT = "select fingerprint from schema_fingerprint where id = 1";
+    private static final String MERGE =
+            "merge into schema_fingerprint (id, fingerprint, recorded_at) key (id) values (1, ?, ?)";
+
+    private final StartupProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final BeanFactory beanFactory;
+
+    //validate / create 로 시작했으면 시작이 끝난 뒤 기록할 값
+    private volatile String pending;
+
+    //EntityManagerFactory 를 만드는 중에 쓰이므로 JdbcTemplate 빈 대신 DataSource 로 직접 만든다
+    public SchemaFingerprint(StartupProperties properties, DataSource dataSource, BeanFactory beanFactory) {
+        this.properties = properties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (!properties.isSkipValidatedSchema()) {
+            return;
+        }
+        String fingerprint = fingerprint();
+        jdbcTemplate.execute(CREATE_TABLE);
+        List<String> recorded = jdbcTemplate.queryForList(SELECT, String.class);
+
+        boolean matches = recorded.contains(fingerprint);
+        String action;
+        if (matches) {
+            action = "none";
+        } else {
+            action = hasTables() ? "validate" : "create";
+            pending = fingerprint;
+        }
+        log.info("schema fingerprint {} {}, hbm2ddl.auto={}", fingerprint, matches ? "matches" : "changed", action);
+        hibernateProperties.put(AvailableSettings.HBM2DDL_AUTO, action);
+    }
+
+    //validate 에 실패하면 시작이 실패하므로 여기까지 오지 않는다
+    @EventListener(ApplicationReadyEvent.class)
+    public void record() {
+        String fingerprint = pending;
+        if (fingerprint == null) {
+            return;
+        }
+        jdbcTemplate.update(MERGE, fingerprint, Timestamp.valueOf(LocalDateTime.now()));
+        pending = null;
+    }
+
+    //엔티티 패키지의 @Entity / @Embeddable / @MappedSuperclass 클래스 파일 바이트. 주석만 바꿔도 달라지지만 그때는 한 번 validate 할 뿐이다
+    private String fingerprint() {
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(ClassUtils.getDefaultClassLoader());
+        MetadataReaderFactory readers = new CachingMetadataReaderFactory(resolver);
+        try {
+            Map<String, Resource> classes = new TreeMap<>();
+            for (String basePackage : AutoConfigurationPackages.get(beanFactory)) {
+                String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+                        + ClassUtils.convertClassNameToResourcePath(basePackage) + "/**/*.class";
+                for (Resource resource : resolver.getResources(pattern)) {
+                    MetadataReader reader = readers.getMetadataReader(resource);
+                    AnnotationMetadata metadata = reader.getAnnotationMetadata();
+                    if (MAPPED.stream().anyMatch(annotation -> metadata.hasAnnotation(annotation.getName()))) {
+                        classes.put(metadata.getClassName(), resource);
+                    }
+                }
+            }
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Resource> entry : classes.entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = entry.getValue().getInputStream()) {
+                    digest.update(in.readAllBytes());
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //schema_fingerprint 말고 다른 테이블이 있는가
+    private boolean hasTables() {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet tables = metaData.getTables(
+                    connection.getCatalog(), connection.getSchema(), "%", new String[]{"TABLE"})) {
+                while (tables.next()) {
+                    if (!"schema_fingerprint".equalsIgnoreCase(tables.getString("TABLE_NAME"))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+}
@@ -0,0 +1,92 @@
+package study.datajpa.stats;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+//트랜잭션 하나에서 생긴 팀별 집계 변화. 커밋 직전에 TeamStatsUpdater 가 team_stats 에 반영한다
+@Getter
+final class TeamStatsChanges {
+
+    private final Set<Long> insertedTeams = new HashSet<>();
+    private final Set<Long> deletedTeams = new HashSet<>();
+    //팀 id 순서로 잠그도록 정렬해 둔다
+    private final Map<Long, Delta> deltas = new TreeMap<>();
+
+    void teamInserted(Long teamId) {
+        insertedTeams.add(teamId);
+    }
+
+    void teamDeleted(Long teamId) {
+        deletedTeams.add(teamId);
+    }
+
+    void added(Long teamId, Integer age, LocalDateTime createdDate) {
+        if (teamId != null) {
+            deltas.computeIfAbsent(teamId, key -> new Delta()).add(age, createdDate);
+        }
+    }
+
+    void removed(Long teamId, Integer age, LocalDateTime createdDate) {
+        if (teamId != null) {
+            deltas.computeIfAbsent(teamId, key -> new Delta()).remove(age, createdDate);
+        }
+    }
+
+    @Getter
+    static final class Delta {
+
+        private long memberCount;
+        private long ageSum;
+        private Integer addedMinAge;
+        private Integer addedMaxAge;
+        private LocalDateTime addedNewest;
+        private Integer removedMinAge;
+        private Integer removedMaxAge;
+        private LocalDateTime removedNewest;
+        private boolean removals;
+
+        private void add(Integer age, LocalDateTime createdDate) {
+            memberCount++;
+            ageSum += age;
+            addedMinAge = addedMinAge == null ? age : Math.min(addedMinAge, age);
+            addedMaxAge = addedMaxAge == null ? age : Math.max(addedMaxAge, age);
+            addedNewest = later(addedNewest, createdDate);
+        }
+
+        private void remove(Integer age, LocalDateTime createdDate) {
+            memberCount--;
+            ageSum -= age;
+            removedMinAge = removedMinAge == null ? age : Math.min(removedMinAge, age);
+            removedMaxAge = removedMaxAge == null ? age : Math.max(removedMaxAge, age);
+            removedNewest = later(removedNewest, createdDate);
+            removals = true;
+        }
+
+        //빠진 값이 (기존 + 이번에 더한 값) 중 최솟값/최댓값/최신값일 수 있으면 증분으로는 알 수 없다
+        boolean removesExtreme(Integer minAge, Integer maxAge, LocalDateTime newest) {
+            if (!removals) {
+                return false;
+            }
+            Integer min = minAge == null ? addedMinAge : addedMinAge == null ? minAge : Math.min(minAge, addedMinAge);
+            Integer max = maxAge == null ? addedMaxAge : addedMaxAge == null ? maxAge : Math.max(maxAge, addedMaxAge);
+            LocalDateTime latest = later(newest, addedNewest);
+            return min == null || removedMinAge <= min
+                    || max == null || removedMaxAge >= max
+                    //DB 에는 마이크로초까지만 저장되어 엔티티 값과 조금 다를 수 있다
+                    || (removedNewest != null && (latest == null || !removedNewest.plus(1, ChronoUnit.MICROS).isBefore(latest)));
+        }
+
+        private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            return b == null || a.isAfter(b) ? a : b;
+        }
+    }
+}
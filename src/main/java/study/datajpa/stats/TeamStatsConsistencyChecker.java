@@ -0,0 +1,74 @@
+package study.datajpa.stats;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+//team_stats 를 회원 테이블을 직접 집계한 값과 비교한다. 테스트나 운영 점검에서 어긋난 팀을 찾고 TeamStatsUpdater.rebuild() 로 맞춘다
+@Component
+@RequiredArgsConstructor
+public class TeamStatsConsistencyChecker {
+
+    private static final String LIVE =
+            "select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age), max(m.created_date)"
+                    + " from team t left join member m on m.team_id = t.team_id group by t.team_id";
+    private static final String MATERIALIZED =
+            "select team_id, member_count, age_sum, min_age, max_age, newest_created_date from team_stats";
+
+    private static final RowMapper<Stats> STATS = (rs, rowNum) -> new Stats(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getLong(3),
+            rs.getObject(4, Integer.class),
+            rs.getObject(5, Integer.class),
+            rs.getObject(6, LocalDateTime.class));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //값이 다른 팀, 한쪽에만 있는 팀. 다 맞으면 비어 있다
+    public List<Mismatch> check() {
+        Map<Long, Stats> live = load(LIVE);
+        Map<Long, Stats> materialized = load(MATERIALIZED);
+        Set<Long> teamIds = new TreeSet<>(live.keySet());
+        teamIds.addAll(materialized.keySet());
+        return teamIds.stream()
+                .filter(teamId -> !Objects.equals(live.get(teamId), materialized.get(teamId)))
+                .map(teamId -> new Mismatch(teamId, live.get(teamId), materialized.get(teamId)))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Stats> load(String sql) {
+        Map<Long, Stats> stats = new HashMap<>();
+        jdbcTemplate.query(sql, STATS).forEach(row -> stats.put(row.getTeamId(), row));
+        return stats;
+    }
+
+    @Value
+    public static class Stats {
+        Long teamId;
+        long memberCount;
+        long ageSum;
+        Integer minAge;
+        Integer maxAge;
+        LocalDateTime newestCreatedDate;
+    }
+
+    //live 나 materialized 가 null 이면 그쪽에 그 팀이 없다
+    @Value
+    public static class Mismatch {
+        Long teamId;
+        Stats live;
+        Stats materialized;
+    }
+}
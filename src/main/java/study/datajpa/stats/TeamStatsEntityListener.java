@@ -0,0 +1,133 @@
+package study.datajpa.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+//회원/팀 insert/update/delete 를 세션(트랜잭션)별 TeamStatsChanges 에 모으고,
+//Hibernate 가 커밋 직전 마지막 flush 를 끝낸 뒤 TeamStatsUpdater 로 반영한다 (스프링 beforeCommit 은 그 flush 보다 먼저라 쓸 수 없다)
+@Component
+@RequiredArgsConstructor
+public class TeamStatsEntityListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener, SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final TeamStatsUpdater updater;
+
+    private final Map<SharedSessionContractImplementor, TeamStatsChanges> pending = new ConcurrentHashMap<>();
+
+    private int teamProperty;
+    private int ageProperty;
+    private int createdDateProperty;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        EntityMetamodel member = sessionFactory.getMetamodel().entityPersister(Member.class).getEntityMetamodel();
+        teamProperty = member.getPropertyIndex("team");
+        ageProperty = member.getPropertyIndex("age");
+        createdDateProperty = member.getPropertyIndex("createdDate");
+
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Class<?> type = event.getPersister().getMappedClass();
+        if (type == Member.class) {
+            added(changes(event.getSession()), event.getState());
+        } else if (type == Team.class) {
+            changes(event.getSession()).teamInserted((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getPersister().getMappedClass() != Member.class) {
+            return;
+        }
+        Object[] oldState = event.getOldState();
+        Object[] state = event.getState();
+        if (oldState == null) {
+            updater.rebuildAfterCommit();
+            return;
+        }
+        if (Objects.equals(teamId(oldState), teamId(state))
+                && Objects.equals(oldState[ageProperty], state[ageProperty])
+                && Objects.equals(oldState[createdDateProperty], state[createdDateProperty])) {
+            return;
+        }
+        TeamStatsChanges changes = changes(event.getSession());
+        removed(changes, oldState);
+        added(changes, state);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Class<?> type = event.getPersister().getMappedClass();
+        if (type == Member.class) {
+            if (event.getDeletedState() == null) {
+                updater.rebuildAfterCommit();
+            } else {
+                removed(changes(event.getSession()), event.getDeletedState());
+            }
+        } else if (type == Team.class) {
+            changes(event.getSession()).teamDeleted((Long) event.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private TeamStatsChanges changes(EventSource session) {
+        TeamStatsChanges changes = pending.get(session);
+        if (changes != null) {
+            return changes;
+        }
+        TeamStatsChanges created = new TeamStatsChanges();
+        pending.put(session, created);
+        session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s -> updater.apply(created));
+        session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> pending.remove(session));
+        return created;
+    }
+
+    private void added(TeamStatsChanges changes, Object[] state) {
+        changes.added(teamId(state), (Integer) state[ageProperty], (LocalDateTime) state[createdDateProperty]);
+    }
+
+    private void removed(TeamStatsChanges changes, Object[] state) {
+        changes.removed(teamId(state), (Integer) state[ageProperty], (LocalDateTime) state[createdDateProperty]);
+    }
+
+    private Long teamId(Object[] state) {
+        Team team = (Team) state[teamProperty];
+        return team == null ? null : team.getId();
+    }
+}
@@ -0,0 +1,188 @@
+package study.datajpa.stats;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.event.BulkUpdatedEvent;
+import study.datajpa.stats.TeamStatsChanges.Delta;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+//team_stats 갱신. 엔티티로 바뀐 회원은 TeamStatsEntityListener 가 모은 변화를 커밋 직전에 같은 트랜잭션에서 반영하고 (롤백되면 같이 롤백),
+//벌크 연산(bulkAgePlus 등)은 어느 팀이 바뀌었는지 모르므로 커밋 뒤에 전체를 다시 집계한다. 그 사이에는 벌크 이전 값이 보인다.
+//엔티티 이벤트도 BulkUpdatedEvent 도 없이 바꾼 행(네이티브/직접 실행한 JPQL)은 rebuild() 를 불러야 맞춰진다
+@Slf4j
+@Component
+public class TeamStatsUpdater {
+
+    private static final String INSERT_TEAM =
+            "insert into team_stats (team_id, member_count, age_sum) values (?, 0, 0)";
+    private static final String DELETE_TEAM = "delete from team_stats where team_id = ?";
+    private static final String LOCK =
+            "select team_id, min_age, max_age, newest_created_date from team_stats"
+                    + " where team_id in (:teamIds) order by team_id for update";
+    //LEAST/GREATEST 는 null 을 건너뛴다
+    private static final String INCREMENT =
+            "update team_stats set member_count = member_count + ?, age_sum = age_sum + ?,"
+                    + " min_age = least(min_age, cast(? as int)), max_age = greatest(max_age, cast(? as int)),"
+                    + " newest_created_date = greatest(newest_created_date, cast(? as timestamp))"
+                    + " where team_id = ?";
+    private static final String AGGREGATE =
+            "merge into team_stats (team_id, member_count, age_sum, min_age, max_age, newest_created_date) key (team_id)"
+                    + " select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age), max(m.created_date)"
+                    + " from team t left join member m on m.team_id = t.team_id";
+    private static final String RECOMPUTE = AGGREGATE + " where t.team_id = ? group by t.team_id";
+    private static final String REBUILD = AGGREGATE + " group by t.team_id";
+    private static final String LOCK_ALL = "select team_id from team_stats order by team_id for update";
+    private static final String DELETE_ORPHANS =
+            "delete from team_stats where team_id not in (select team_id from team)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final AtomicInteger rebuildRequests = new AtomicInteger();
+
+    public TeamStatsUpdater(JdbcTemplate jdbcTemplate,
+                            NamedParameterJdbcTemplate namedJdbcTemplate,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //전체 다시 집계. 모든 행을 먼저 잠가서 진행 중인 증분 갱신이 끝난 뒤의 값을 읽는다
+    public void rebuild() {
+        requiresNew.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList(LOCK_ALL, Long.class);
+            jdbcTemplate.update(REBUILD);
+            jdbcTemplate.update(DELETE_ORPHANS);
+        });
+    }
+
+    //이미 다른 스레드가 다시 집계하는 중이면 그 스레드가 한 번 더 돌고 여기서는 바로 돌아간다
+    //(MemberBulkUpdateExecutor 처럼 구간마다 커밋하는 벌크 연산이 매번 전체를 집계하지 않도록)
+    public void requestRebuild() {
+        if (rebuildRequests.incrementAndGet() > 1) {
+            return;
+        }
+        int seen;
+        do {
+            seen = rebuildRequests.get();
+            try {
+                rebuild();
+            } catch (DataAccessException e) {
+                log.warn("could not rebuild team stats", e);
+            }
+        } while (rebuildRequests.addAndGet(-seen) > 0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.warn("could not rebuild team stats", e);
+        }
+    }
+
+    @EventListener
+    public void onBulkUpdated(BulkUpdatedEvent event) {
+        if (event.getEntityType() == Member.class || event.getEntityType() == Team.class) {
+            rebuildAfterCommit();
+        }
+    }
+
+    void rebuildAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            requestRebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    requestRebuild();
+                }
+            }
+        });
+    }
+
+    //커밋 직전, flush 가 끝난 뒤에 같은 트랜잭션(커넥션)에서 실행된다
+    void apply(TeamStatsChanges changes) {
+        Set<Long> deleted = changes.getDeletedTeams();
+        List<Object[]> inserts = changes.getInsertedTeams().stream()
+                .filter(teamId -> !deleted.contains(teamId))
+                .map(teamId -> new Object[]{teamId})
+                .collect(Collectors.toList());
+        batchUpdate(INSERT_TEAM, inserts);
+
+        Map<Long, Delta> deltas = new TreeMap<>(changes.getDeltas());
+        deltas.keySet().removeAll(deleted);
+        if (!deltas.isEmpty()) {
+            //바뀐 팀을 id 순서로 먼저 잠근다. 다시 집계하는 팀은 잠근 뒤에 읽어야 다른 트랜잭션이 반영한 값을 덮어쓰지 않는다
+            Map<Long, Current> current = lock(deltas.keySet());
+            List<Object[]> increments = new ArrayList<>();
+            List<Object[]> recomputes = new ArrayList<>();
+            deltas.forEach((teamId, delta) -> {
+                Current row = current.get(teamId);
+                if (row == null || delta.removesExtreme(row.minAge, row.maxAge, row.newestCreatedDate)) {
+                    recomputes.add(new Object[]{teamId});
+                } else {
+                    increments.add(new Object[]{delta.getMemberCount(), delta.getAgeSum(),
+                            delta.getAddedMinAge(), delta.getAddedMaxAge(), delta.getAddedNewest(), teamId});
+                }
+            });
+            batchUpdate(INCREMENT, increments);
+            batchUpdate(RECOMPUTE, recomputes);
+        }
+
+        batchUpdate(DELETE_TEAM, deleted.stream()
+                .map(teamId -> new Object[]{teamId})
+                .collect(Collectors.toList()));
+    }
+
+    private void batchUpdate(String sql, List<Object[]> args) {
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, args);
+        }
+    }
+
+    private Map<Long, Current> lock(Set<Long> teamIds) {
+        Map<Long, Current> current = new HashMap<>();
+        namedJdbcTemplate.query(LOCK, Map.of("teamIds", teamIds), rs -> {
+            current.put(rs.getLong(1), new Current(
+                    rs.getObject(2, Integer.class),
+                    rs.getObject(3, Integer.class),
+                    rs.getObject(4, LocalDateTime.class)));
+        });
+        return current;
+    }
+
+    @RequiredArgsConstructor
+    private static class Current {
+        private final Integer minAge;
+        private final Integer maxAge;
+        private final LocalDateTime newestCreatedDate;
+    }
+}
@@ -0,0 +1,50 @@
+package study.datajpa.web;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.repository.MemberIdCache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+//컨트롤러 파라미터 id -> MemberSnapshot. DomainClassConverter(트랜잭션 + findById) 대신 MemberIdCache 를 읽는다.
+//한 요청 안에서 같은 id 는 한 번만 찾고 같은 스냅샷을 돌려준다.
+//없는 id 면 null 이라서 파라미터는 Optional<MemberSnapshot> 으로 받는다 (변환 중 던진 예외는 400 이 되어 404 를 낼 수 없다)
+@Component
+@RequiredArgsConstructor
+public class MemberSnapshotConverter implements Converter<String, MemberSnapshot> {
+
+    private static final String RESOLVED = MemberSnapshotConverter.class.getName() + ".RESOLVED";
+
+    private final MemberIdCache memberIdCache;
+
+    @Override
+    public MemberSnapshot convert(String source) {
+        Long id = Long.valueOf(source.trim());
+        Map<Long, Optional<MemberSnapshot>> resolved = resolved();
+        Optional<MemberSnapshot> member = resolved != null
+                ? resolved.computeIfAbsent(id, memberIdCache::findById)
+                : memberIdCache.findById(id);
+        return member.orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Optional<MemberSnapshot>> resolved() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<Long, Optional<MemberSnapshot>> resolved =
+                (Map<Long, Optional<MemberSnapshot>>) attributes.getAttribute(RESOLVED, RequestAttributes.SCOPE_REQUEST);
+        if (resolved == null) {
+            resolved = new HashMap<>();
+            attributes.setAttribute(RESOLVED, resolved, RequestAttributes.SCOPE_REQUEST);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,19 @@
+package study.datajpa.web;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import study.datajpa.datasource.ReadWriteRoutingDataSource;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+//서블릿 스레드는 요청마다 재사용되므로, 앞 요청이 남긴 쓰기 시각 때문에 관계없는 요청이 primary 에 묶이지 않도록 요청 시작 때 지운다
+@Component
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReadWriteRoutingDataSource.forgetWrites();
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package study.datajpa.web;
+
+//요청 하나(요청 스레드)에서 실행한 SQL 수와 한도. SqlBudgetInterceptor 가 걸고 SqlBudgetJdbcListener 가 센다
+final class SqlBudget {
+
+    private static final ThreadLocal<SqlBudget> CURRENT = new ThreadLocal<>();
+
+    private final String endpoint;
+    private final int limit;
+    private final boolean reject;
+    private int statements;
+
+    private SqlBudget(String endpoint, int limit, boolean reject) {
+        this.endpoint = endpoint;
+        this.limit = limit;
+        this.reject = reject;
+    }
+
+    static void start(String endpoint, int limit, boolean reject) {
+        CURRENT.set(new SqlBudget(endpoint, limit, reject));
+    }
+
+    static SqlBudget current() {
+        return CURRENT.get();
+    }
+
+    static SqlBudget finish() {
+        SqlBudget budget = CURRENT.get();
+        CURRENT.remove();
+        return budget;
+    }
+
+    void beforeStatement(String sql) {
+        statements++;
+        if (reject && isExceeded()) {
+            throw new SqlBudgetExceededException(endpoint, limit, sql);
+        }
+    }
+
+    boolean isExceeded() {
+        return limit > 0 && statements > limit;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getStatements() {
+        return statements;
+    }
+}
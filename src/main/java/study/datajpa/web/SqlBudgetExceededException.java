@@ -0,0 +1,13 @@
+package study.datajpa.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//datajpa.sql-budget.mode=reject 에서 요청의 SQL 수가 한도를 넘었을 때. 커넥션을 더 붙잡지 않도록 그 SQL 은 실행하지 않는다
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "SQL statement budget exceeded")
+public class SqlBudgetExceededException extends RuntimeException {
+
+    public SqlBudgetExceededException(String endpoint, int limit, String sql) {
+        super(endpoint + " exceeded its budget of " + limit + " SQL statements at: " + sql);
+    }
+}
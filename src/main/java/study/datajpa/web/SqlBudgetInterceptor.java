@@ -0,0 +1,66 @@
+package study.datajpa.web;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import study.datajpa.config.SqlBudgetProperties;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+//컨트롤러 요청마다 실행한 SQL 수를 세고(datajpa.http.sql.statements) 엔드포인트별 한도를 넘으면 로그를 남기거나 막는다.
+//직렬화 중 지연 로딩(Member.team 등)도 요청 스레드에서 일어나므로 같이 센다. 비동기로 넘어간 뒤(/members/export)는 세지 않는다
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private final SqlBudgetProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && request.getDispatcherType() == DispatcherType.REQUEST) {
+            String endpoint = endpoint(request);
+            SqlBudget.start(endpoint, properties.limitFor(endpoint), properties.getMode() == SqlBudgetProperties.Mode.REJECT);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlBudget.finish();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        SqlBudget budget = SqlBudget.finish();
+        if (budget == null) {
+            return;
+        }
+
+        DistributionSummary.builder("datajpa.http.sql.statements")
+                .description("SQL statements executed per request")
+                .tag("endpoint", budget.getEndpoint())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(budget.getStatements());
+
+        if (budget.isExceeded()) {
+            log.warn("{} ran {} SQL statements, over its budget of {}",
+                    budget.getEndpoint(), budget.getStatements(), budget.getLimit());
+        }
+    }
+
+    //GET /members/{id}
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
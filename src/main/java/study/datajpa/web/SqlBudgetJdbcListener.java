@@ -0,0 +1,18 @@
+package study.datajpa.web;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+//요청 스레드에서 SQL 이 실행되기 직전에 예산을 확인한다
+@Component
+public class SqlBudgetJdbcListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onBeforeAnyExecute(StatementInformation statementInformation) {
+        SqlBudget budget = SqlBudget.current();
+        if (budget != null) {
+            budget.beforeStatement(statementInformation.getSql());
+        }
+    }
+}
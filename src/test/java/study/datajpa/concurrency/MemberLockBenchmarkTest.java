@@ -0,0 +1,155 @@
+package study.datajpa.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//같은 몇 개의 회원 age 를 여러 스레드가 동시에 +1 한다. PESSIMISTIC_WRITE 와 @Version + 재시도 처리량 비교
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=info"
+})
+class MemberLockBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 500;
+    private static final int HOT_MEMBERS = 16;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @PersistenceContext
+    EntityManager em;
+
+    List<Member> members = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < HOT_MEMBERS; i++) {
+            members.add(memberRepository.save(new Member("lock" + i, 0)));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'lock%'").executeUpdate());
+    }
+
+    @Test
+    void pessimisticVersusOptimistic() throws Exception {
+        //pessimistic: select ... for update 로 읽고 커밋까지 다른 writer 를 막는다
+        Result pessimistic = run(i -> transactionTemplate.executeWithoutResult(status -> {
+            Member member = memberRepository.findLockByUsername("lock" + i).get(0);
+            member.setAge(member.getAge() + 1);
+        }));
+        int pessimisticTotal = totalAge();
+
+        //optimistic: 락 없이 읽고 커밋 때 version 으로 충돌을 감지, 충돌하면 다시 실행
+        double conflictsBefore = count("datajpa.optimistic.conflicts");
+        double retriesBefore = count("datajpa.optimistic.retries");
+        Result optimistic = run(i -> memberJpaRepository.agePlus(members.get(i).getId(), 1));
+        int optimisticTotal = totalAge() - pessimisticTotal;
+
+        Timer lockWait = meterRegistry.find("datajpa.lock.wait").timer();
+
+        System.out.println("pessimistic = " + pessimistic.throughput() + " updates/s"
+                + ", lock wait mean = " + (lockWait == null ? "-" : lockWait.mean(TimeUnit.MICROSECONDS) + "us"));
+        System.out.println("optimistic  = " + optimistic.throughput() + " updates/s"
+                + ", conflicts = " + (count("datajpa.optimistic.conflicts") - conflictsBefore)
+                + ", retries = " + (count("datajpa.optimistic.retries") - retriesBefore)
+                + ", gave up = " + optimistic.failed);
+
+        //어느 쪽도 갱신을 잃어버리면 안 된다
+        assertThat(pessimisticTotal).isEqualTo(pessimistic.succeeded);
+        assertThat(optimisticTotal).isEqualTo(optimistic.succeeded);
+    }
+
+    private Result run(IntConsumer update) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                for (int n = 0; n < UPDATES_PER_THREAD; n++) {
+                    try {
+                        update.accept(ThreadLocalRandom.current().nextInt(HOT_MEMBERS));
+                        succeeded.incrementAndGet();
+                    } catch (OptimisticLockingFailureException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        return new Result(succeeded.get(), failed.get(), elapsed);
+    }
+
+    private int totalAge() {
+        return transactionTemplate.execute(status ->
+                em.createQuery("select sum(m.age) from Member m where m.username like 'lock%'", Long.class)
+                        .getSingleResult()
+                        .intValue());
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static class Result {
+        private final int succeeded;
+        private final int failed;
+        private final long elapsedNanos;
+
+        Result(int succeeded, int failed, long elapsedNanos) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long throughput() {
+            return succeeded * 1_000_000_000L / elapsedNanos;
+        }
+    }
+}
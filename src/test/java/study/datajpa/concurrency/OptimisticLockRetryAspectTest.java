@@ -0,0 +1,114 @@
+package study.datajpa.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//커밋 시점의 version 충돌을 보려면 테스트 트랜잭션이 없어야 한다
+@SpringBootTest
+class OptimisticLockRetryAspectTest {
+
+    @Autowired
+    ConflictingUpdater updater;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Member member;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteById(member.getId());
+        updater.attempts.set(0);
+    }
+
+    @Test
+    public void retryAfterConflict(){
+        //given
+        member = memberRepository.save(new Member("optimistic1", 0));
+        double conflictsBefore = count("datajpa.optimistic.conflicts");
+
+        //when
+        updater.agePlus(member.getId(), 1);
+
+        //then
+        //첫 시도는 다른 트랜잭션의 +100 에 밀려 롤백되고, 두 번째 시도가 그 값을 읽어서 +1
+        assertThat(updater.attempts.get()).isEqualTo(2);
+        assertThat(memberRepository.findById(member.getId()).get().getAge()).isEqualTo(101);
+        assertThat(count("datajpa.optimistic.conflicts") - conflictsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts(){
+        //given
+        member = memberRepository.save(new Member("optimistic2", 0));
+
+        //when, then
+        assertThatThrownBy(() -> updater.alwaysConflicting(member.getId()))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(updater.attempts.get()).isEqualTo(2);
+        assertThat(memberRepository.findById(member.getId()).get().getAge()).isEqualTo(200);
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ConflictingUpdater conflictingUpdater() {
+            return new ConflictingUpdater();
+        }
+    }
+
+    //읽은 직후 다른 스레드(다른 트랜잭션)가 같은 회원을 먼저 수정해서 커밋하게 만든다
+    static class ConflictingUpdater {
+
+        @PersistenceContext
+        EntityManager em;
+        @Autowired
+        MemberJpaRepository memberJpaRepository;
+
+        final AtomicInteger attempts = new AtomicInteger();
+
+        @Transactional
+        @RetryOnOptimisticLock(backoff = 1)
+        public void agePlus(Long id, int delta) {
+            Member member = em.find(Member.class, id);
+            if (attempts.incrementAndGet() == 1) {
+                CompletableFuture.runAsync(() -> memberJpaRepository.agePlus(id, 100)).join();
+            }
+            member.setAge(member.getAge() + delta);
+        }
+
+        @Transactional
+        @RetryOnOptimisticLock(maxAttempts = 2, backoff = 1)
+        public void alwaysConflicting(Long id) {
+            attempts.incrementAndGet();
+            Member member = em.find(Member.class, id);
+            CompletableFuture.runAsync(() -> memberJpaRepository.agePlus(id, 100)).join();
+            member.setAge(member.getAge() + 1);
+        }
+    }
+}
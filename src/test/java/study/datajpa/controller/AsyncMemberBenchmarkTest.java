@@ -0,0 +1,183 @@
+package study.datajpa.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+//커넥션 풀(10)보다 훨씬 많은 동시 요청으로 /members/{id} 와 /async/members/{id} 비교.
+//요청 스레드를 붙잡는 시간(hold), 응답까지 걸린 시간(latency) 백분위, 동시에 막혀 있던 요청 스레드 수,
+//커넥션을 기다린 스레드 수(hikaricp.connections.pending), 503 으로 거절된 수를 출력한다
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=info",
+        "datajpa.async-repository.queue-capacity=50",
+        "datajpa.async-repository.max-wait=500ms"
+})
+@AutoConfigureMockMvc
+class AsyncMemberBenchmarkTest {
+
+    private static final int MEMBERS = 1000;
+    private static final int CLIENTS = 64;
+    private static final int REQUESTS_PER_CLIENT = 100;
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < MEMBERS; i++) {
+            ids.add(memberRepository.save(new Member("overload" + i, i % 100)).getId());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'overload%'").executeUpdate());
+    }
+
+    @Test
+    void syncVersusAsync() throws Exception {
+        Result sync = run("/members/{id}", false);
+        Result async = run("/async/members/{id}", true);
+
+        System.out.println("sync  : " + sync);
+        System.out.println("async : " + async);
+
+        assertThat(sync.ok.get()).isEqualTo(CLIENTS * REQUESTS_PER_CLIENT);
+        assertThat(async.ok.get() + async.rejected.get()).isEqualTo(CLIENTS * REQUESTS_PER_CLIENT);
+    }
+
+    private Result run(String path, boolean async) throws Exception {
+        Result result = new Result();
+        AtomicInteger holding = new AtomicInteger();
+        Gauge pending = meterRegistry.find("hikaricp.connections.pending").tag("pool", "primary").gauge();
+        Gauge executorActive = meterRegistry.find("executor.active").tag("name", "member-repository").gauge();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        ExecutorService sampler = Executors.newSingleThreadExecutor();
+        Future<?> sampling = sampler.submit(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                result.maxHolding.accumulateAndGet(holding.get(), Math::max);
+                result.maxPending.accumulateAndGet(pending == null ? 0 : (long) pending.value(), Math::max);
+                result.maxExecutorActive.accumulateAndGet(executorActive == null ? 0 : (long) executorActive.value(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            futures.add(clients.submit(() -> {
+                for (int n = 0; n < REQUESTS_PER_CLIENT; n++) {
+                    Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                    long start = System.nanoTime();
+
+                    holding.incrementAndGet();
+                    MvcResult mvcResult = mvc.perform(get(path, id)).andReturn();
+                    holding.decrementAndGet();
+                    long held = System.nanoTime() - start;
+
+                    int status;
+                    if (async) {
+                        mvcResult.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+                        status = mvc.perform(asyncDispatch(mvcResult)).andReturn().getResponse().getStatus();
+                    } else {
+                        status = mvcResult.getResponse().getStatus();
+                    }
+                    result.record(held, System.nanoTime() - start, status);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        sampling.cancel(true);
+        clients.shutdown();
+        sampler.shutdown();
+        return result;
+    }
+
+    private static class Result {
+        private final List<Long> holds = new ArrayList<>();
+        private final List<Long> latencies = new ArrayList<>();
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicLong maxHolding = new AtomicLong();
+        private final AtomicLong maxPending = new AtomicLong();
+        private final AtomicLong maxExecutorActive = new AtomicLong();
+
+        synchronized void record(long held, long latency, int status) {
+            holds.add(held);
+            latencies.add(latency);
+            if (status == 200) {
+                ok.incrementAndGet();
+            } else if (status == 503) {
+                rejected.incrementAndGet();
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "ok = " + ok + ", 503 = " + rejected
+                    + ", hold " + percentiles(holds)
+                    + ", latency " + percentiles(latencies)
+                    + ", max request threads blocked = " + maxHolding
+                    + ", max connection waiters = " + maxPending
+                    + ", max repository threads = " + maxExecutorActive;
+        }
+
+        private static String percentiles(List<Long> nanos) {
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            return Arrays.stream(new double[]{0.5, 0.99, 1.0})
+                    .mapToObj(p -> (p == 1.0 ? "max" : "p" + (int) (p * 100)) + "="
+                            + TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)]) + "us")
+                    .collect(Collectors.joining(" ", "[", "]"));
+        }
+    }
+}
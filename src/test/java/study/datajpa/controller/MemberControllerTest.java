@@ -0,0 +1,173 @@
+package study.datajpa.controller;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.QueryHint;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberController memberController;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'export%'").executeUpdate());
+    }
+
+    @Test
+    public void export() throws Exception {
+        //given
+        memberRepository.bulkInsert(() -> IntStream.range(0, 1000)
+                .mapToObj(i -> new Member("export" + i, i))
+                .iterator());
+
+        //when
+        MvcResult result = mvc.perform(get("/members/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        //then
+        String[] lines = body.split("\n");
+        assertThat((long) lines.length).isEqualTo(memberRepository.count());
+        assertThat(lines[0]).startsWith("{\"id\":");
+    }
+
+    @Test
+    public void findMemberNotFound() throws Exception {
+        //given
+        Member member = memberRepository.save(new Member("export-find", 10));
+
+        //when, then
+        mvc.perform(get("/members/{id}", member.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("export-find"));
+        mvc.perform(get("/members2/{id}", member.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("export-find"));
+
+        mvc.perform(get("/members/{id}", -1L))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/members2/{id}", -1L))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/members2/{id}", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void findMemberAsync() throws Exception {
+        //given
+        Member member = memberRepository.save(new Member("export-async", 10));
+
+        //when, then
+        MvcResult found = mvc.perform(get("/async/members/{id}", member.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(found))
+                .andExpect(status().isOk())
+                .andExpect(content().string("export-async"));
+
+        MvcResult missing = mvc.perform(get("/async/members/{id}", -1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(missing))
+                .andExpect(status().isNotFound());
+    }
+
+    //힙 사용량은 MemberExportBenchmarkTest. 여기서는 메모리가 일정하게 유지되는 구조인지만 본다:
+    //커서(fetchSize) + readOnly 로 읽고, 영속성 컨텍스트에 쌓이지 않고, 응답을 나눠서 내보낸다
+    @Test
+    public void exportStreamsIncrementally() throws Exception {
+        //given
+        int rows = 2000;
+        memberRepository.bulkInsert(() -> IntStream.range(0, rows)
+                .mapToObj(i -> new Member("export" + i, i % 100))
+                .iterator());
+
+        //when, then
+        Map<String, String> hints = Arrays.stream(MemberRepository.class.getMethod("streamMemberDto")
+                        .getAnnotation(QueryHints.class).value())
+                .collect(Collectors.toMap(QueryHint::name, QueryHint::value));
+        assertThat(hints).containsEntry("org.hibernate.fetchSize", "500")
+                .containsEntry("org.hibernate.readOnly", "true");
+
+        int maxManaged = transactionTemplate.execute(status -> {
+            int max = 0;
+            try (Stream<MemberDto> members = memberRepository.streamMemberDto()) {
+                Iterator<MemberDto> iterator = members.iterator();
+                for (int read = 1; iterator.hasNext(); read++) {
+                    iterator.next();
+                    if (read % 100 == 0) {
+                        max = Math.max(max, em.unwrap(Session.class).getStatistics().getEntityCount());
+                    }
+                }
+            }
+            return max;
+        });
+        assertThat(maxManaged).isZero();
+
+        //flush 될 때마다 그때까지 쓴 크기
+        List<Integer> flushedAt = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushedAt.add(size());
+            }
+        };
+        memberController.export().getBody().writeTo(out);
+
+        long lines = out.toString(StandardCharsets.UTF_8).lines().count();
+        assertThat(lines).isGreaterThanOrEqualTo(rows);
+        //500 줄마다 내보낸다
+        assertThat(flushedAt.size()).isGreaterThanOrEqualTo((int) (lines / 500));
+        assertThat(flushedAt).isSorted();
+        assertThat(flushedAt.get(0)).isLessThan(out.size());
+    }
+}
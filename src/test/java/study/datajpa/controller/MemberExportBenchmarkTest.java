@@ -0,0 +1,81 @@
+package study.datajpa.controller;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//streamMemberDto 를 끝까지 읽는 동안 힙 사용량이 얼마나 느는지. System.gc() 시점에 따라 값이 흔들린다
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=info"
+})
+class MemberExportBenchmarkTest {
+
+    private static final int ROWS = 100_000;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'export%'").executeUpdate());
+    }
+
+    @Test
+    void streamHeapGrowth() {
+        //given
+        memberRepository.bulkInsert(() -> IntStream.range(0, ROWS)
+                .mapToObj(i -> new Member("export" + i, i % 100))
+                .iterator());
+
+        //when
+        long[] result = transactionTemplate.execute(status -> {
+            long before = usedHeap();
+            long read = 0;
+            int maxManaged = 0;
+            try (Stream<MemberDto> members = memberRepository.streamMemberDto()) {
+                Iterator<MemberDto> iterator = members.iterator();
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    if (++read % 1000 == 0) {
+                        maxManaged = Math.max(maxManaged, em.unwrap(Session.class).getStatistics().getEntityCount());
+                    }
+                }
+                return new long[]{read, maxManaged, usedHeap() - before};
+            }
+        });
+
+        //then
+        System.out.println("rows = " + result[0] + ", heap growth = " + result[2] / 1024 + "KB");
+        assertThat(result[0]).isGreaterThanOrEqualTo(ROWS);
+        assertThat(result[1]).isZero();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
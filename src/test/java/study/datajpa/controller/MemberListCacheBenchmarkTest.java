@@ -0,0 +1,117 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//2차 캐시를 켠 경우와 끈 경우의 /members 응답 시간과 Member.team 프록시 초기화 시간 비교
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@AutoConfigureMockMvc
+abstract class MemberListCacheBenchmarkTest {
+
+    private static final int TEAMS = 100;
+    private static final int MEMBERS = 10_000;
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void seed() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Team("benchTeam" + i));
+        }
+        teamRepository.saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, MEMBERS)
+                .mapToObj(i -> {
+                    Member member = new Member("bench" + i, i % 100);
+                    member.setTeam(teams.get(i % TEAMS));
+                    return member;
+                })
+                .iterator());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'bench%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'benchTeam%'").executeUpdate();
+        });
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    @Test
+    void membersLatency() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            mvc.perform(get("/members").param("page", String.valueOf(i)).param("size", "100"));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mvc.perform(get("/members").param("page", String.valueOf(i % (MEMBERS / 100))).param("size", "100"))
+                    .andExpect(status().isOk());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(getClass().getSimpleName() + " /members avg = " + elapsed / ITERATIONS / 1000 + "us");
+    }
+
+    @Test
+    void lazyTeamLatency() {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int page = i % (MEMBERS / 100);
+            transactionTemplate.executeWithoutResult(status -> memberRepository.findAll(PageRequest.of(page, 100))
+                    .forEach(member -> member.getTeam().getName()));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(getClass().getSimpleName() + " page + lazy team avg = " + elapsed / ITERATIONS / 1000 + "us");
+    }
+
+    @SpringBootTest(properties = {
+            "decorator.datasource.p6spy.enable-logging=false",
+            "logging.level.org.hibernate.SQL=info"
+    })
+    static class CacheOn extends MemberListCacheBenchmarkTest {
+    }
+
+    @SpringBootTest(properties = {
+            "decorator.datasource.p6spy.enable-logging=false",
+            "logging.level.org.hibernate.SQL=info",
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+            "spring.jpa.properties.javax.persistence.sharedCache.mode=NONE"
+    })
+    static class CacheOff extends MemberListCacheBenchmarkTest {
+    }
+}
@@ -0,0 +1,105 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+///members 의 엔티티 경로(findAll + MemberDto::new)와 DTO 프로젝션 경로(findMemberDtoPage) 비교
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=info"
+})
+class MemberListProjectionBenchmarkTest {
+
+    private static final int MEMBERS = 10_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int ITERATIONS = 500;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void seed() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            teams.add(new Team("benchTeam" + i));
+        }
+        teamRepository.saveAll(teams);
+        memberRepository.bulkInsert(() -> IntStream.range(0, MEMBERS)
+                .mapToObj(i -> {
+                    Member member = new Member("bench" + i, i % 100);
+                    member.setTeam(teams.get(i % teams.size()));
+                    return member;
+                })
+                .iterator());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'bench%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'benchTeam%'").executeUpdate();
+        });
+    }
+
+    @Test
+    void entityVersusProjection() {
+        //팀 이름까지 채우려면 엔티티 경로는 member.getTeam().getName() 으로 팀을 하나씩 읽어야 한다
+        measure("entity", page -> memberRepository.findAll(PageRequest.of(page, PAGE_SIZE))
+                .map(MemberDto::new)
+                .getContent());
+        measure("entity + team", page -> memberRepository.findAll(PageRequest.of(page, PAGE_SIZE))
+                .map(member -> new MemberDto(member.getId(), member.getUsername(), member.getTeam().getName()))
+                .getContent());
+        measure("projection", page -> memberRepository.findMemberDtoPage(PageRequest.of(page, PAGE_SIZE))
+                .getContent());
+    }
+
+    private void measure(String name, IntFunction<List<MemberDto>> query) {
+        int pages = MEMBERS / PAGE_SIZE;
+        for (int i = 0; i < 100; i++) {
+            int page = i % pages;
+            transactionTemplate.execute(status -> query.apply(page));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int page = i % pages;
+            transactionTemplate.execute(status -> query.apply(page));
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(name + ": avg = " + elapsed / ITERATIONS / 1000 + "us, allocated = "
+                + allocated / ITERATIONS / 1024 + "KB/page");
+    }
+}
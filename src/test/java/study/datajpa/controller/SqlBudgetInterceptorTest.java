@@ -0,0 +1,85 @@
+package study.datajpa.controller;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//GET /members 는 내용 + count 로 2번이라 한도 1 이면 막힌다
+@SpringBootTest(properties = {
+        "datajpa.sql-budget.mode=reject",
+        "datajpa.sql-budget.limits[GET\\ /members]=1"
+})
+@AutoConfigureMockMvc
+class SqlBudgetInterceptorTest {
+
+    @Autowired
+    MockMvc mvc;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'budget%'").executeUpdate());
+    }
+
+    @Test
+    public void rejectOverBudget() throws Exception {
+        //given
+        //첫 페이지가 꽉 차야 count 쿼리가 나간다
+        memberRepository.bulkInsert(() -> IntStream.range(0, 11)
+                .mapToObj(i -> new Member("budget" + i, i))
+                .iterator());
+
+        //when, then
+        mvc.perform(get("/members").param("size", "10"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void recordStatementsPerEndpoint() throws Exception {
+        //given
+        Member member = memberRepository.save(new Member("budgetMember", 10));
+        long before = count("GET /members/{id}");
+
+        //when
+        mvc.perform(get("/members/" + member.getId()))
+                .andExpect(status().isOk());
+
+        //then
+        DistributionSummary summary = meterRegistry.get("datajpa.http.sql.statements")
+                .tag("endpoint", "GET /members/{id}")
+                .summary();
+        assertThat(summary.count() - before).isEqualTo(1);
+        assertThat(summary.max()).isEqualTo(1);
+    }
+
+    private long count(String endpoint) {
+        DistributionSummary summary = meterRegistry.find("datajpa.http.sql.statements")
+                .tag("endpoint", endpoint)
+                .summary();
+        return summary == null ? 0 : summary.count();
+    }
+}
@@ -0,0 +1,279 @@
+package study.datajpa.counter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberProjection;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋/롤백 뒤의 카운터를 봐야 하므로 @Transactional 을 붙이지 않는다.
+//다른 테스트가 남긴 행도 있으므로 항상 실제 count(*) 와 비교한다
+@SpringBootTest
+@Import(SqlRecorder.class)
+class RowCountersTest {
+
+    @Autowired
+    RowCounters rowCounters;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    SqlRecorder sqlRecorder;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void rebuild() {
+        //다른 테스트의 벌크 delete 로 stale 이 됐을 수 있다
+        rowCounters.rebuild(true);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'rowCount%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'rowCount%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void countWithoutQuery(){
+        //given
+        Team team = teamRepository.save(new Team("rowCountTeam"));
+        memberRepository.save(new Member("rowCount1", 10, team));
+        memberRepository.save(new Member("rowCount2", 20, team));
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            long members = memberRepository.count();
+            long teams = teamRepository.count();
+            long teamMembers = teamRepository.countMembers(team.getId());
+            recording.assertStatementCount(0);
+
+            assertThat(members).isEqualTo(liveCount("member"));
+            assertThat(teams).isEqualTo(liveCount("team"));
+            assertThat(teamMembers).isEqualTo(2);
+        }
+    }
+
+    //GET /members 의 페이지 total 도 카운터로 답한다
+    @Test
+    public void memberDtoPageWithoutCountQuery(){
+        //given
+        memberRepository.save(new Member("rowCount1", 10));
+        memberRepository.save(new Member("rowCount2", 20));
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            Page<MemberDto> page = memberRepository.findMemberDtoPage(PageRequest.of(0, 1));
+            recording.assertStatementCount(1);
+            assertThat(page.getTotalElements()).isEqualTo(liveCount("member"));
+        }
+    }
+
+    //조건 없는 count 를 쓰는 다른 페이지(CountCache.countAll)도 같은 카운터로 답한다
+    @Test
+    public void nativeProjectionPageWithoutCountQuery(){
+        //given
+        memberRepository.save(new Member("rowCount1", 10));
+        memberRepository.save(new Member("rowCount2", 20));
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            Page<MemberProjection> page = memberRepository.findByNativeProjection(PageRequest.of(0, 1));
+            recording.assertStatementCount(1);
+            assertThat(page.getTotalElements()).isEqualTo(liveCount("member"));
+        }
+    }
+
+    //DB 에는 커밋됐지만 카운터에는 아직 더하지 않은 트랜잭션이 rebuild-wait 안에 끝나지 않으면 세지 않는다
+    @Test
+    public void commitDuringRebuild() throws Exception {
+        //given
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            //ledger 보다 먼저 등록되므로 ledger 의 afterCompletion 전에 멈춘다
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    committed.countDown();
+                    await(release);
+                }
+            });
+            memberRepository.save(new Member("rowCount1", 10));
+        }));
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when
+        rowCounters.rebuild(true);
+        release.countDown();
+        writer.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then
+        assertThat(memberRepository.count()).isEqualTo(liveCount("member"));
+
+        rowCounters.rebuild(false);
+        long members;
+        try (SqlRecording recording = sqlRecorder.start()) {
+            members = memberRepository.count();
+            recording.assertStatementCount(0);
+        }
+        assertThat(members).isEqualTo(liveCount("member"));
+    }
+
+    //쓰기가 끊이지 않아도 새 ledger 를 잠깐 막고 다시 센다
+    @Test
+    public void rebuildUnderSteadyWrites() throws Exception {
+        //given: 벌크 delete 로 stale
+        memberRepository.save(new Member("rowCount0", 10));
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username = 'rowCount0'").executeUpdate());
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; running.get(); i++) {
+                    memberRepository.save(new Member("rowCount" + writer + "_" + i, 10));
+                }
+            }));
+        }
+
+        //when
+        Thread.sleep(100);
+        rowCounters.rebuild(false);
+        running.set(false);
+        for (Future<?> writer : writers) {
+            writer.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then
+        long members;
+        try (SqlRecording recording = sqlRecorder.start()) {
+            members = memberRepository.count();
+            recording.assertStatementCount(0);
+        }
+        assertThat(members).isEqualTo(liveCount("member"));
+    }
+
+    @Test
+    public void rollbackIgnored(){
+        //given
+        long before = memberRepository.count();
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("rowCount1", 10));
+            //자기 트랜잭션의 insert 는 보인다
+            assertThat(memberRepository.count()).isEqualTo(before + 1);
+            status.setRollbackOnly();
+        });
+
+        //then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(memberRepository.count()).isEqualTo(before);
+            recording.assertStatementCount(0);
+        }
+        assertThat(before).isEqualTo(liveCount("member"));
+    }
+
+    @Test
+    public void changeTeam(){
+        //given
+        Team teamA = teamRepository.save(new Team("rowCountTeamA"));
+        Team teamB = teamRepository.save(new Team("rowCountTeamB"));
+        Member member = memberRepository.save(new Member("rowCount1", 10, teamA));
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            Member found = em.find(Member.class, member.getId());
+            found.changeTeam(em.find(Team.class, teamB.getId()));
+            assertThat(teamRepository.countMembers(teamA.getId())).isEqualTo(0);
+            assertThat(teamRepository.countMembers(teamB.getId())).isEqualTo(1);
+        });
+
+        //then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(teamRepository.countMembers(teamA.getId())).isEqualTo(0);
+            assertThat(teamRepository.countMembers(teamB.getId())).isEqualTo(1);
+            recording.assertStatementCount(0);
+        }
+    }
+
+    @Test
+    public void bulkDeleteFallsBackToQuery(){
+        //given
+        Team team = teamRepository.save(new Team("rowCountTeam"));
+        memberRepository.save(new Member("rowCount1", 10, team));
+        memberRepository.save(new Member("rowCount2", 20, team));
+
+        //when
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username = 'rowCount1'").executeUpdate());
+
+        //then 엔티티 이벤트 없이 지운 행은 카운터가 모르므로 다시 셀 때까지 쿼리로 답한다
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(memberRepository.count()).isEqualTo(liveCount("member"));
+            assertThat(teamRepository.countMembers(team.getId())).isEqualTo(1);
+            assertThat(recording.selectCount()).isEqualTo(3);
+        }
+
+        rowCounters.rebuild(false);
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(memberRepository.count()).isEqualTo(liveCount("member"));
+            assertThat(teamRepository.countMembers(team.getId())).isEqualTo(1);
+            //liveCount 하나
+            assertThat(recording.selectCount()).isEqualTo(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long liveCount(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+}
@@ -0,0 +1,149 @@
+package study.datajpa.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.repository.AsyncMemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//primary 와 복제본 둘을 각각 다른 in-memory H2 로 띄우고 database() 로 어디로 갔는지 본다
+//DML 을 커밋하면 그 스레드는 read-your-writes-window 동안 primary 에 묶인다.
+//컨텍스트를 띄우며 실행한 DDL 도 쓰기로 남으므로 테스트마다 ReadYourWritesInterceptor 처럼 지우고 시작한다
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.replicas[0].url=jdbc:h2:mem:replica0;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.replicas[0].username=sa",
+        "datajpa.datasource.replicas[1].url=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1",
+        "datajpa.datasource.replicas[1].username=sa",
+        "datajpa.datasource.read-your-writes-window=1h"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReadWriteRoutingDataSourceTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    PrimaryReader primaryReader;
+    @Autowired
+    AsyncMemberRepository asyncMemberRepository;
+
+    @BeforeEach
+    void newRequest() {
+        ReadWriteRoutingDataSource.forgetWrites();
+    }
+
+    @Test
+    @Order(1)
+    public void readOnlyGoesToReplica(){
+        assertThat(database(true)).isIn("REPLICA0", "REPLICA1");
+        assertThat(database(false)).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @Order(2)
+    public void readOnlyInsideWriteTransactionStaysOnPrimary(){
+        String database = transactionTemplate(false).execute(status -> database(true));
+
+        assertThat(database).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @Order(3)
+    public void readFromPrimary(){
+        assertThat(primaryReader.database()).isEqualTo("PRIMARY");
+        assertThat(database(true)).isIn("REPLICA0", "REPLICA1");
+    }
+
+    @Test
+    @Order(4)
+    public void writeTransactionThatOnlyReadsDoesNotPin(){
+        //given
+        transactionTemplate(false).executeWithoutResult(status ->
+                jdbcTemplate.queryForObject("select count(*) from member", Long.class));
+
+        //when
+        String database = database(true);
+
+        //then
+        assertThat(database).isIn("REPLICA0", "REPLICA1");
+    }
+
+    @Test
+    @Order(5)
+    public void readYourWrites(){
+        //given
+        transactionTemplate(false).executeWithoutResult(status ->
+                jdbcTemplate.update("create table if not exists routing_test(id int)"));
+
+        //when
+        String database = database(true);
+
+        //then
+        assertThat(database).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @Order(6)
+    public void readYourWritesFollowsAsyncQuery() throws Exception {
+        //given
+        transactionTemplate(false).executeWithoutResult(status ->
+                jdbcTemplate.update("create table if not exists routing_test(id int)"));
+
+        //when
+        String database = asyncMemberRepository.query(repository ->
+                jdbcTemplate.queryForObject("select database()", String.class).toUpperCase())
+                .get(5, TimeUnit.SECONDS);
+
+        //then
+        assertThat(database).isEqualTo("PRIMARY");
+    }
+
+    private String database(boolean readOnly) {
+        return transactionTemplate(readOnly).execute(status ->
+                jdbcTemplate.queryForObject("select database()", String.class).toUpperCase());
+    }
+
+    private TransactionTemplate transactionTemplate(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template;
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        PrimaryReader primaryReader(JdbcTemplate jdbcTemplate) {
+            return new PrimaryReader(jdbcTemplate);
+        }
+    }
+
+    static class PrimaryReader {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        PrimaryReader(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @ReadFromPrimary
+        @Transactional(readOnly = true)
+        public String database() {
+            return jdbcTemplate.queryForObject("select database()", String.class).toUpperCase();
+        }
+    }
+}
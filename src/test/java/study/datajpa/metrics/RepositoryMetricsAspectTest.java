@@ -0,0 +1,76 @@
+package study.datajpa.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsAspectTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    RepositoryMetricsEndpoint endpoint;
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void recordPerMethod(){
+        //given
+        Team team = teamRepository.save(new Team("metricsTeam"));
+        memberRepository.save(new Member("metrics1", 10, team));
+        em.flush();
+        em.clear();
+        double[] before = totals("findEntityGraphByUsername");
+
+        //when
+        memberRepository.findEntityGraphByUsername("metrics1");
+
+        //then
+        //select 한 번, 한 행에서 member 와 team 두 엔티티
+        double[] after = totals("findEntityGraphByUsername");
+        assertThat(after[0] - before[0]).isEqualTo(1);
+        assertThat(after[1] - before[1]).isEqualTo(1);
+        assertThat(after[2] - before[2]).isEqualTo(2);
+
+        assertThat(endpoint.repositories())
+                .anySatisfy(stats -> {
+                    assertThat(stats.getRepository()).isEqualTo("MemberRepository");
+                    assertThat(stats.getMethod()).isEqualTo("findEntityGraphByUsername");
+                    assertThat(stats.getCount()).isPositive();
+                });
+    }
+
+    //{statements, rows, entities} 누적값
+    private double[] totals(String method) {
+        return new double[]{
+                total(RepositoryMetricsAspect.STATEMENTS, method),
+                total(RepositoryMetricsAspect.ROWS, method),
+                total(RepositoryMetricsAspect.ENTITIES, method)
+        };
+    }
+
+    private double total(String name, String method) {
+        DistributionSummary summary = meterRegistry.find(name)
+                .tag("repository", "MemberRepository")
+                .tag("method", method)
+                .summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+}
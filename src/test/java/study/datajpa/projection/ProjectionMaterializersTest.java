@@ -0,0 +1,64 @@
+package study.datajpa.projection;
+
+import org.junit.jupiter.api.Test;
+import study.datajpa.repository.MemberProjection;
+import study.datajpa.repository.NestedClosedProjections;
+import study.datajpa.repository.UsernameOnly;
+import study.datajpa.repository.UsernameOnlyDto;
+
+import java.lang.reflect.Proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProjectionMaterializersTest {
+
+    ProjectionMaterializers materializers = new ProjectionMaterializers();
+
+    @Test
+    public void generatedForAnnotatedProjections(){
+        assertThat(materializers.find(UsernameOnly.class)).isPresent();
+        assertThat(materializers.find(UsernameOnlyDto.class)).isPresent();
+        assertThat(materializers.find(NestedClosedProjections.class)).isPresent();
+        assertThat(materializers.find(MemberProjection.class)).isPresent();
+        assertThat(materializers.find(Runnable.class)).isEmpty();
+    }
+
+    @Test
+    public void materializeWithoutProxy(){
+        ProjectionMaterializer<NestedClosedProjections> materializer = materializers.find(NestedClosedProjections.class).get();
+        assertThat(materializer.properties()).containsExactly("username", "team.name");
+
+        NestedClosedProjections projection = materializer.materialize(new Object[]{"m1", "teamA"});
+
+        assertThat(Proxy.isProxyClass(projection.getClass())).isFalse();
+        assertThat(projection.getUsername()).isEqualTo("m1");
+        assertThat(projection.getTeam().getName()).isEqualTo("teamA");
+
+        //팀이 없으면 (left join 컬럼이 전부 null) 중첩 프로젝션도 null
+        assertThat(materializer.materialize(new Object[]{"m2", null}).getTeam()).isNull();
+    }
+
+    @Test
+    public void numbersFollowGetterType(){
+        //네이티브 쿼리가 member_id 를 Integer 나 BigInteger 로 돌려줘도 Long 으로
+        MemberProjection projection = materializers.find(MemberProjection.class).get()
+                .materialize(new Object[]{1, "m1", null});
+
+        assertThat(projection.getId()).isEqualTo(1L);
+        assertThat(projection.getTeamName()).isNull();
+    }
+
+    @Test
+    public void classProjection(){
+        UsernameOnlyDto dto = materializers.find(UsernameOnlyDto.class).get().materialize(new Object[]{"m1"});
+
+        assertThat(dto.getUsername()).isEqualTo("m1");
+    }
+
+    @Test
+    public void selectJoinsNestedPaths(){
+        String jpql = ProjectionMaterializers.select(materializers.find(NestedClosedProjections.class).get(), "Member", "m");
+
+        assertThat(jpql).isEqualTo("select m.username, j0.name from Member m left join m.team j0");
+    }
+}
@@ -0,0 +1,128 @@
+package study.datajpa.queryplan;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.queryplan.QueryPlanFinding.Kind;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+//리포지토리 쿼리에 카테시안 조인이나 인덱스 없는 조건이 생기면 여기서 빌드가 실패한다.
+//빈 테이블이면 H2 가 인덱스 대신 풀 스캔을 고르기도 하므로 행을 넣고 커밋한 뒤 분석한다
+@SpringBootTest
+class QueryPlanAnalyzerTest {
+
+    @Autowired
+    QueryPlanAnalyzer analyzer;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int t = 0; t < 10; t++) {
+                Team team = new Team("queryPlanTeam" + t);
+                em.persist(team);
+                for (int i = 0; i < 10; i++) {
+                    em.persist(new Member("queryPlan" + i, i, team));
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'queryPlan%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'queryPlan%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void repositoryQueries(){
+        QueryPlanReport report = analyzer.analyze();
+
+        assertThat(report.getFindings()).isEmpty();
+        assertThat(report.getQueries()).isGreaterThan(20);
+        //ignore 에 적어 둔 쿼리는 보고는 하지만 실패시키지 않는다
+        assertThat(report.getIgnored())
+                .extracting(QueryPlanFinding::getQuery)
+                .contains("MemberRepository.bulkAgePlus");
+    }
+
+    //다른 트랜잭션이 회원 행을 잠그고 있어도 기다리지 않는다. 벌크 수정과 잠금 조회는 SQL 만 얻고 실행하지 않는다
+    @Test
+    public void writesAndLocksNotExecuted() throws Exception {
+        //given
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("update Member m set m.age = m.age where m.username like 'queryPlan%'").executeUpdate();
+            locked.countDown();
+            await(release);
+        }));
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when
+        QueryPlanReport report;
+        try {
+            report = analyzer.analyze();
+        } finally {
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        //then
+        assertThat(report.getSkipped()).doesNotContainKeys(
+                "MemberRepository.bulkAgePlus", "MemberRepository.bulkAgePlusInRange", "MemberRepository.findLockByUsername");
+        assertThat(report.getIgnored())
+                .extracting(QueryPlanFinding::getQuery)
+                .contains("MemberRepository.bulkAgePlus");
+    }
+
+    @Test
+    public void cartesianJoin(){
+        assertThat(analyzer.analyze("cartesian", "select m.member_id, t.name from member m left join team t"))
+                .extracting(QueryPlanFinding::getKind, QueryPlanFinding::getTable)
+                .contains(tuple(Kind.CARTESIAN_JOIN, "TEAM"));
+
+        assertThat(analyzer.analyze("joined", "select m.member_id, t.name from member m left join team t on m.team_id = t.team_id"))
+                .isEmpty();
+    }
+
+    @Test
+    public void missingIndex(){
+        assertThat(analyzer.analyze("byAge", "select * from member where age = 1"))
+                .extracting(QueryPlanFinding::getKind)
+                .containsExactly(Kind.MISSING_INDEX);
+
+        assertThat(analyzer.analyze("byUsername", "select * from member where username = 'queryPlan1'"))
+                .isEmpty();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
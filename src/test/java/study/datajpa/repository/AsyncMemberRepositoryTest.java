@@ -0,0 +1,114 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//스레드 하나, 대기열 하나짜리 bulkhead
+@SpringBootTest(properties = {
+        "datajpa.async-repository.threads=1",
+        "datajpa.async-repository.queue-capacity=1",
+        "datajpa.async-repository.max-wait=200ms"
+})
+class AsyncMemberRepositoryTest {
+
+    @Autowired
+    AsyncMemberRepository asyncMemberRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'async%'").executeUpdate());
+    }
+
+    @Test
+    public void runsInReadOnlyTransactionOnRepositoryThread() throws Exception {
+        //given
+        memberRepository.save(new Member("async1", 10));
+
+        //when
+        List<MemberDto> members = asyncMemberRepository.findByUsername("async1").get(5, TimeUnit.SECONDS);
+        String thread = asyncMemberRepository.query(repository -> Thread.currentThread().getName()
+                + (TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? " readOnly" : "")).get(5, TimeUnit.SECONDS);
+
+        //then
+        assertThat(members).extracting(MemberDto::getUsername).containsExactly("async1");
+        assertThat(thread).startsWith("member-repository-").endsWith(" readOnly");
+    }
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        double rejectedBefore = rejected("full");
+
+        //스레드 하나는 붙잡혀 있고 하나는 대기열에 있다
+        CompletableFuture<Object> running = asyncMemberRepository.query(repository -> await(release));
+        CompletableFuture<Long> queued = asyncMemberRepository.query(MemberRepository::count);
+        CompletableFuture<Long> overflow = asyncMemberRepository.query(MemberRepository::count);
+
+        assertThat(overflow).isCompletedExceptionally();
+        assertThatThrownBy(overflow::get).hasCauseInstanceOf(TaskRejectedException.class);
+        assertThat(rejected("full") - rejectedBefore).isEqualTo(1);
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    //max-wait 보다 오래 대기열에 있던 작업은 실행하지 않는다
+    @Test
+    public void expireWhenWaitedTooLong() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        double expiredBefore = rejected("expired");
+
+        CompletableFuture<Object> running = asyncMemberRepository.query(repository -> await(release));
+        CompletableFuture<Long> queued = asyncMemberRepository.query(MemberRepository::count);
+        Thread.sleep(300);
+        release.countDown();
+
+        running.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TaskRejectedException.class);
+        assertThat(rejected("expired") - expiredBefore).isEqualTo(1);
+    }
+
+    private static Object await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("datajpa.repository.async.rejected").tag("reason", reason).counter().count();
+    }
+}
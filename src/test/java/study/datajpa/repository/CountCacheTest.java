@@ -0,0 +1,106 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//트랜잭션마다 커밋되어야 캐시/무효화가 보이므로 @Transactional 을 붙이지 않는다
+@SpringBootTest
+class CountCacheTest {
+
+    private static final int AGE = 777;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        memberRepository.deleteAll(memberRepository.findByAge(AGE, PageRequest.of(0, 100)).getContent());
+    }
+
+    @Test
+    public void cachedCount(){
+        //given
+        memberRepository.save(new Member("count1", AGE));
+        memberRepository.save(new Member("count2", AGE));
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        //when
+        double hitsBefore = hits();
+        Page<Member> first = memberRepository.findByAge(AGE, pageRequest);
+        Page<Member> second = memberRepository.findByAge(AGE, pageRequest);
+
+        //then
+        assertThat(first.getTotalElements()).isEqualTo(2);
+        assertThat(second.getTotalElements()).isEqualTo(2);
+        assertThat(hits() - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateOnWrite(){
+        //given
+        memberRepository.save(new Member("count1", AGE));
+        assertThat(memberJpaRepository.totalCount(AGE)).isEqualTo(1);
+
+        //when
+        memberRepository.save(new Member("count2", AGE));
+
+        //then
+        assertThat(memberJpaRepository.totalCount(AGE)).isEqualTo(2);
+        assertThat(memberRepository.findByAge(AGE, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidateOnBulkUpdate(){
+        //given
+        memberRepository.save(new Member("count1", AGE - 1));
+        assertThat(memberJpaRepository.totalCount(AGE)).isEqualTo(0);
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(AGE - 1));
+
+        //then
+        assertThat(memberJpaRepository.totalCount(AGE)).isEqualTo(1);
+    }
+
+    @Test
+    public void readOnlyNotFlushed(){
+        //given
+        memberRepository.save(new Member("count1", AGE));
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        //when readOnly 트랜잭션의 count 가 영속성 컨텍스트를 내보내지 않는다
+        readOnly.executeWithoutResult(status -> {
+            memberRepository.save(new Member("count2", AGE));
+            memberRepository.findByAge(AGE, PageRequest.of(0, 1)).getTotalElements();
+        });
+
+        //then
+        assertThat(memberJpaRepository.totalCount(AGE)).isEqualTo(1);
+    }
+
+    private double hits() {
+        return meterRegistry.get("datajpa.count.cache.requests")
+                .tag("result", "hit")
+                .functionCounter()
+                .count();
+    }
+}
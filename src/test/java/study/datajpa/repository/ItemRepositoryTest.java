@@ -1,17 +1,38 @@
 package study.datajpa.repository;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import study.datajpa.entity.Item;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+//batch 는 executeBatch 한 번이 한 statement
 @SpringBootTest
+@Import(SqlRecorder.class)
 class ItemRepositoryTest {
 
     @Autowired
     ItemRepository itemRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    SqlRecorder sqlRecorder;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from item where id like 'batch-%'");
+    }
 
     @Test
     public void save(){
@@ -19,4 +40,41 @@ class ItemRepositoryTest {
 
         itemRepository.save(item);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void insertAll(){
+        //given
+        List<Item> items = items(0, 1000);
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            int inserted = itemRepository.insertAll(items);
+
+            assertThat(inserted).isEqualTo(1000);
+            recording.assertSelectCount(0);
+            recording.assertStatementCount(10);
+        }
+    }
+
+    @Test
+    public void upsertAll(){
+        //given
+        itemRepository.insertAll(items(0, 500));
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            itemRepository.upsertAll(items(0, 1000));
+
+            recording.assertSelectCount(0);
+            recording.assertStatementCount(10);
+        }
+        assertThat(jdbcTemplate.queryForObject("select count(*) from item where id like 'batch-%'", Long.class))
+                .isEqualTo(1000);
+    }
+
+    private List<Item> items(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new Item("batch-" + i))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,70 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//SQL 로그를 끄고 측정한다. ./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=info"
+})
+class MemberBulkInsertBenchmarkTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'ingest%'").executeUpdate());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void bulkInsert(int rows) {
+        //given
+        Iterable<Member> members = () -> IntStream.range(0, rows)
+                .mapToObj(i -> new Member("ingest" + i, i % 100))
+                .iterator();
+
+        //when
+        long start = System.nanoTime();
+        int inserted = memberRepository.bulkInsert(members);
+        long elapsed = System.nanoTime() - start;
+
+        //then
+        System.out.println("bulkInsert " + rows + " rows = " + elapsed / 1_000_000 + "ms, "
+                + (long) (rows / (elapsed / 1_000_000_000.0)) + " rows/sec");
+        assertThat(inserted).isEqualTo(rows);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000})
+    void saveOneByOne(int rows) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            memberRepository.save(new Member("ingest" + i, i % 100));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("save " + rows + " rows = " + elapsed / 1_000_000 + "ms, "
+                + (long) (rows / (elapsed / 1_000_000_000.0)) + " rows/sec");
+    }
+}
@@ -0,0 +1,102 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.event.BulkUpdatedEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//구간마다 별도 트랜잭션으로 커밋되므로 테스트에 @Transactional 을 붙이지 않는다
+@SpringBootTest(properties = "datajpa.bulk-update.chunk-size=7")
+class MemberBulkUpdateExecutorTest {
+
+    @Autowired
+    MemberBulkUpdateExecutor executor;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'chunk%'").executeUpdate());
+    }
+
+    @Test
+    public void bulkAgePlus(){
+        //given
+        //age 900 ~ 949, 다른 테스트 데이터와 겹치지 않는 나이
+        memberRepository.bulkInsert(() -> IntStream.range(0, 50)
+                .mapToObj(i -> new Member("chunk" + i, 900 + i))
+                .iterator());
+        List<MemberBulkUpdateExecutor.Progress> reports = new CopyOnWriteArrayList<>();
+
+        //when
+        MemberBulkUpdateExecutor.Result result = executor.bulkAgePlus(920, reports::add);
+
+        //then
+        assertThat(result.isCompleted()).isTrue();
+        assertThat(result.getUpdatedRows()).isEqualTo(30);
+        assertThat(reports).hasSize(result.getChunks());
+
+        List<Member> members = memberRepository.findByUsername("chunk49");
+        assertThat(members.get(0).getAge()).isEqualTo(950);
+        assertThat(memberRepository.findByUsername("chunk0").get(0).getAge()).isEqualTo(900);
+    }
+
+    @Test
+    public void uncertainChunkNotRetried(){
+        //given
+        memberRepository.bulkInsert(() -> IntStream.range(0, 20)
+                .mapToObj(i -> new Member("chunk" + i, 960))
+                .iterator());
+        AfterCommitFailure.remaining.set(1);
+
+        //when 한 구간은 커밋된 뒤 afterCommit 에서 실패한다
+        MemberBulkUpdateExecutor.Result result = executor.bulkAgePlus(960);
+
+        //then 다시 시도했다면 그 구간은 962 가 된다
+        assertThat(result.isCompleted()).isFalse();
+        assertThat(result.getUncertainRanges()).hasSize(1);
+        assertThat(result.getFailedRanges()).isEmpty();
+        IntStream.range(0, 20).forEach(i ->
+                assertThat(memberRepository.findByUsername("chunk" + i).get(0).getAge()).isEqualTo(961));
+    }
+
+    @TestConfiguration
+    static class AfterCommitFailure {
+
+        static final AtomicInteger remaining = new AtomicInteger();
+
+        @EventListener
+        public void onBulkUpdated(BulkUpdatedEvent event) {
+            if (remaining.getAndUpdate(n -> Math.max(n - 1, 0)) == 0) {
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    throw new IllegalStateException("failure after commit");
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
+import study.datajpa.web.MemberSnapshotConverter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋된 뒤에 무효화되는지 봐야 하므로 @Transactional 을 붙이지 않는다
+@SpringBootTest
+@Import(SqlRecorder.class)
+class MemberIdCacheTest {
+
+    @Autowired
+    MemberIdCache idCache;
+    @Autowired
+    MemberSnapshotConverter converter;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    SqlRecorder sqlRecorder;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        RequestContextHolder.resetRequestAttributes();
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'byId%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'byId%'").executeUpdate();
+        });
+        idCache.invalidateAll();
+    }
+
+    @Test
+    public void invalidateOnWrite(){
+        //given
+        Team team = teamRepository.save(new Team("byIdTeam"));
+        Member member = memberRepository.save(new Member("byId1", 10, team));
+        idCache.findById(member.getId());
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(idCache.findById(member.getId())).get()
+                    .extracting(MemberSnapshot::getTeamName).isEqualTo("byIdTeam");
+            recording.assertStatementCount(0);
+        }
+
+        memberJpaRepository.memberUpdate(member.getId(), "byId1", 20);
+        assertThat(idCache.findById(member.getId()).get().getAge()).isEqualTo(20);
+
+        //팀 이름이 바뀌면 그 팀 회원의 스냅샷도 지운다
+        transactionTemplate.executeWithoutResult(status -> em.find(Team.class, team.getId()).setName("byIdTeam2"));
+        assertThat(idCache.findById(member.getId()).get().getTeamName()).isEqualTo("byIdTeam2");
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(20));
+        assertThat(idCache.findById(member.getId()).get().getAge()).isEqualTo(21);
+
+        memberRepository.deleteById(member.getId());
+        assertThat(idCache.findById(member.getId())).isEmpty();
+    }
+
+    @Test
+    public void missingIdCached(){
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(idCache.findById(-1L)).isEmpty();
+            assertThat(idCache.findById(-1L)).isEmpty();
+            recording.assertStatementCount(1);
+        }
+    }
+
+    //한 요청 안에서는 중간에 무효화되어도 같은 id 에 같은 스냅샷
+    @Test
+    public void converterResolvesOncePerRequest(){
+        //given
+        Member member = memberRepository.save(new Member("byId2", 10));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        //when
+        MemberSnapshot first = converter.convert(String.valueOf(member.getId()));
+        memberJpaRepository.memberUpdate(member.getId(), "byId2", 20);
+        MemberSnapshot second = converter.convert(String.valueOf(member.getId()));
+
+        //then
+        assertThat(second).isSameAs(first);
+        assertThat(converter.convert("-1")).isNull();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(converter.convert(String.valueOf(member.getId())).getAge()).isEqualTo(20);
+    }
+}
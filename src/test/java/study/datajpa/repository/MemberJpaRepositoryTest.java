@@ -4,13 +4,18 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.entity.Member;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,10 +23,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 @SpringBootTest
 @Transactional
 @Rollback(value = false)
+@Import(SqlRecorder.class)
 class MemberJpaRepositoryTest {
 
     @Autowired
     private MemberJpaRepository memberJpaRepository;
+    @Autowired
+    private SqlRecorder sqlRecorder;
+    @PersistenceContext
+    private EntityManager em;
 
     @Test
     void testMember() {
@@ -43,6 +53,24 @@ class MemberJpaRepositoryTest {
 
     }
 
+    @Test
+    void findQueryCount() {
+        //given
+        Member member = memberJpaRepository.save(new Member("queryCountMember"));
+        em.flush();
+        em.clear();
+
+        try (SqlRecording recording = sqlRecorder.start()) {
+            //when
+            memberJpaRepository.find(member.getId());
+            memberJpaRepository.find(member.getId());
+
+            //then
+            //두 번째는 영속성 컨텍스트에서 꺼낸다
+            recording.assertSelectCount(1);
+        }
+    }
+
     @Test
     void basicCRUD() {
 
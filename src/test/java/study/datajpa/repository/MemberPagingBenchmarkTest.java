@@ -0,0 +1,92 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//./gradlew benchmark 로만 실행된다
+@Tag("benchmark")
+@SpringBootTest
+class MemberPagingBenchmarkTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int DEEP_PAGE = 10_000;
+    private static final int ROWS = PAGE_SIZE * DEEP_PAGE;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'bench%'").executeUpdate());
+    }
+
+    @Test
+    void offsetVersusKeyset() {
+        //given
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < ROWS; i++) {
+                em.persist(new Member(String.format("bench%07d", i), i % 100));
+                if (i % 1000 == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+
+        Sort sort = Sort.by("username", "id");
+        MemberCursor first = MemberCursor.first(MemberCursor.Key.USERNAME);
+        MemberCursor deep = transactionTemplate.execute(status -> {
+            Member last = em.createQuery("select m from Member m order by m.username asc, m.id asc", Member.class)
+                    .setFirstResult((DEEP_PAGE - 1) * PAGE_SIZE - 1)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            return first.next(last);
+        });
+
+        //when
+        long offsetFirst = measure(() -> memberRepository.findAll(PageRequest.of(0, PAGE_SIZE, sort)));
+        long offsetDeep = measure(() -> memberRepository.findAll(PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE, sort)));
+        long keysetFirst = measure(() -> memberRepository.findAfter(first, PAGE_SIZE));
+        long keysetDeep = measure(() -> memberRepository.findAfter(deep, PAGE_SIZE));
+
+        //then
+        System.out.println("offset page 1      = " + offsetFirst / 1000 + "us");
+        System.out.println("offset page " + DEEP_PAGE + " = " + offsetDeep / 1000 + "us");
+        System.out.println("keyset page 1      = " + keysetFirst / 1000 + "us");
+        System.out.println("keyset page " + DEEP_PAGE + " = " + keysetDeep / 1000 + "us");
+
+        assertThat(transactionTemplate.execute(status -> memberRepository.findAfter(deep, PAGE_SIZE).getContent()))
+                .hasSize(PAGE_SIZE);
+    }
+
+    //warm up 후 평균 시간(ns)
+    private long measure(Supplier<?> query) {
+        for (int i = 0; i < 20; i++) {
+            transactionTemplate.execute(status -> query.get());
+        }
+        int iterations = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            transactionTemplate.execute(status -> query.get());
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+}
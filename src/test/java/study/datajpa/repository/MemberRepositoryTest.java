@@ -1,9 +1,12 @@
 package study.datajpa.repository;
 
+import org.hibernate.SessionFactory;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.Rollback;
@@ -11,21 +14,27 @@ import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.lang.reflect.Proxy;
 import java.sql.Time;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest
 @Transactional
 @Rollback(value = false)
+@Import(SqlRecorder.class)
 public class MemberRepositoryTest {
 
 
@@ -35,6 +44,8 @@ public class MemberRepositoryTest {
     private TeamRepository teamRepository;
     @Autowired
     private MemberQueryRepository memberQueryRepository;
+    @Autowired
+    private SqlRecorder sqlRecorder;
     @PersistenceContext
     EntityManager em;
 
@@ -319,6 +330,38 @@ public class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void findMemberLazyQueryCount(){
+        //given
+        Team teamA = teamRepository.save(new Team("lazyTeamA"));
+        Team teamB = teamRepository.save(new Team("lazyTeamB"));
+        memberRepository.save(new Member("lazyMember1", 10, teamA));
+        memberRepository.save(new Member("lazyMember2", 20, teamB));
+        em.flush();
+        em.clear();
+        em.getEntityManagerFactory().getCache().evictAll();
+
+        try (SqlRecording recording = sqlRecorder.start()) {
+            //when
+            List<Member> members = memberRepository.findByNames(Arrays.asList("lazyMember1", "lazyMember2"));
+            for (Member member : members) {
+                member.getTeam().getName();
+            }
+
+            //then
+            //회원 1번 + team 프록시들을 batch fetch 로 1번
+            recording.assertSelectCount(2)
+                    .assertNoNPlusOne();
+        }
+
+        em.clear();
+        try (SqlRecording recording = sqlRecorder.start()) {
+            memberRepository.findEntityGraphByUsername("lazyMember1").get(0).getTeam().getName();
+
+            recording.assertSelectCount(1);
+        }
+    }
+
     @Test
     public void queryHint(){
 
@@ -386,6 +429,51 @@ public class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void specCompiled(){
+        //given
+        Team team = new Team("specTeam");
+        em.persist(team);
+        em.persist(new Member("specMember1", 0, team));
+        em.persist(new Member("specMember2", 0, team));
+        em.flush();
+        em.clear();
+
+        //when
+        List<Member> byBoth = memberRepository.search(MemberFilter.create().username("specMember1").teamName("specTeam"));
+        List<Member> byTeam = memberRepository.search(MemberFilter.create().teamName("specTeam"));
+        List<Member> bySpecification = memberRepository.findAll(
+                MemberFilter.create().username("specMember1").teamName("specTeam").toSpecification());
+
+        //then
+        assertThat(byBoth).extracting("username").containsExactly("specMember1");
+        assertThat(byTeam).hasSize(2);
+        assertThat(bySpecification).extracting("username").containsExactly("specMember1");
+    }
+
+    //null username 은 두 API 모두 조건 없음
+    @Test
+    public void specNullUsername(){
+        //given
+        Team team = new Team("specTeam");
+        em.persist(team);
+        em.persist(new Member("specMember1", 0, team));
+        em.persist(new Member("specMember2", 0, team));
+        em.flush();
+        em.clear();
+
+        //when
+        List<Member> byFilter = memberRepository.search(MemberFilter.create().username(null).teamName("specTeam"));
+        List<Member> byFilterSpecification = memberRepository.findAll(
+                MemberFilter.create().username(null).teamName("specTeam").toSpecification());
+        List<Member> bySpec = memberRepository.findAll(MemberSpec.username(null).and(MemberSpec.teamName("specTeam")));
+
+        //then
+        assertThat(byFilter).hasSize(2);
+        assertThat(byFilterSpecification).hasSize(2);
+        assertThat(bySpec).hasSize(2);
+    }
+
     @Test
     public void queryByExample(){
         //given
@@ -441,6 +529,56 @@ public class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void projectionsGenerated(){
+        //given
+        Team teamA=new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("m1", 0, teamA));
+        em.persist(new Member("m1", 0));
+
+        em.flush();
+        em.clear();
+
+        //when
+        List<NestedClosedProjections> nested = memberRepository.findProjectionsByUsername("m1", NestedClosedProjections.class);
+        List<UsernameOnlyDto> dtos = memberRepository.findProjectionsByUsername("m1", UsernameOnlyDto.class);
+
+        //then
+        assertThat(nested).extracting(NestedClosedProjections::getUsername).containsOnly("m1");
+        assertThat(nested).extracting(projection -> projection.getTeam() == null ? null : projection.getTeam().getName())
+                .containsExactlyInAnyOrder("teamA", null);
+        assertThat(nested).noneMatch(projection -> Proxy.isProxyClass(projection.getClass()));
+        assertThat(dtos).extracting(UsernameOnlyDto::getUsername).containsExactly("m1", "m1");
+    }
+
+    @Test
+    public void projectionsWithoutGeneratedMaterializer(){
+        //given
+        em.persist(new Member("m1", 10));
+        em.persist(new Member("m2", 20));
+
+        em.flush();
+        em.clear();
+
+        //when
+        List<Member> members = memberRepository.findProjectionsByUsername("m1", Member.class);
+        List<UsernameAndAge> projections = memberRepository.findProjectionsByUsername("m1", UsernameAndAge.class);
+
+        //then
+        assertThat(members).extracting(Member::getAge).containsExactly(10);
+        assertThat(members).allMatch(em::contains);
+        assertThat(projections).extracting(UsernameAndAge::getUsername, UsernameAndAge::getAge)
+                .containsExactly(tuple("m1", 10));
+    }
+
+    //@GeneratedProjection 이 없는 프로젝션
+    interface UsernameAndAge {
+        String getUsername();
+        int getAge();
+    }
+
     @Test
     public void nativeQuery(){
         //given
@@ -463,6 +601,155 @@ public class MemberRepositoryTest {
             System.out.println("memberProjection.getUsername() = " + memberProjection.getUsername());
             System.out.println("memberProjection.getUsername() = " + memberProjection.getTeamName());
         }
+        //팀과 조인 조건 없이 조인하면 회원이 팀 수만큼 반복된다
+        assertThat(content).extracting(MemberProjection::getId).doesNotHaveDuplicates();
+        assertThat(result.getTotalElements()).isEqualTo(memberRepository.count());
+    }
+
+    @Test
+    public void keysetPaging(){
+        //given
+        for (int i = 0; i < 7; i++) {
+            memberRepository.save(new Member("keyset" + i, i % 3));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<Long> ids = new ArrayList<>();
+        MemberCursor cursor = MemberCursor.first(MemberCursor.Key.AGE);
+        Slice<Member> slice;
+        do {
+            slice = memberRepository.findAfter(cursor, 3);
+            for (Member member : slice) {
+                ids.add(member.getId());
+            }
+            if (slice.hasContent()) {
+                List<Member> content = slice.getContent();
+                cursor = MemberCursor.decode(cursor.next(content.get(content.size() - 1)).encode());
+            }
+        } while (slice.hasNext());
+
+        //then
+        assertThat(ids).doesNotHaveDuplicates();
+        assertThat((long) ids.size()).isEqualTo(memberRepository.count());
+    }
+
+    //username 이 null 인 회원에서 페이지가 끊겨도 건너뛰거나 반복하지 않는다
+    @Test
+    public void keysetPagingWithNullUsername(){
+        //given
+        for (int i = 0; i < 5; i++) {
+            memberRepository.save(new Member(null, i));
+            memberRepository.save(new Member("keyset" + i, i));
+        }
+        memberRepository.save(new Member("null", 0));
+        em.flush();
+        em.clear();
+
+        //when
+        List<Long> ids = new ArrayList<>();
+        MemberCursor cursor = MemberCursor.first(MemberCursor.Key.USERNAME);
+        Slice<Member> slice;
+        do {
+            slice = memberRepository.findAfter(cursor, 3);
+            for (Member member : slice) {
+                ids.add(member.getId());
+            }
+            if (slice.hasContent()) {
+                List<Member> content = slice.getContent();
+                cursor = MemberCursor.decode(cursor.next(content.get(content.size() - 1)).encode());
+            }
+        } while (slice.hasNext());
+
+        //then
+        assertThat(ids).doesNotHaveDuplicates();
+        assertThat((long) ids.size()).isEqualTo(memberRepository.count());
+    }
+
+    @Test
+    public void bulkInsert(){
+        //given
+        Team team = teamRepository.save(new Team("bulkTeam"));
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("bulk" + i, i, team));
+        }
+
+        //when
+        int inserted = memberRepository.bulkInsert(members);
+
+        //then
+        assertThat(inserted).isEqualTo(250);
+        assertThat(em.contains(members.get(0))).isFalse();
+        Long count = em.createQuery("select count(m) from Member m where m.team.name = 'bulkTeam'", Long.class)
+                .getSingleResult();
+        assertThat(count).isEqualTo(250);
+    }
+
+    @Test
+    public void findMemberDtoPage(){
+        //given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("0dto1", 10, teamA));
+        em.persist(new Member("0dto2", 20, teamA));
+        em.persist(new Member("0dto3", 30));
+        em.flush();
+        em.clear();
+
+        //when
+        //숫자로 시작하는 이름이 맨 앞에 오도록 정렬
+        Page<MemberDto> page = memberRepository.findMemberDtoPage(
+                PageRequest.of(0, 100, Sort.by(Sort.Direction.ASC, "username")));
+
+        //then
+        List<MemberDto> dtos = page.getContent().stream()
+                .filter(dto -> dto.getUsername().startsWith("0dto"))
+                .collect(Collectors.toList());
+        assertThat(dtos).extracting("username").containsExactly("0dto1", "0dto2", "0dto3");
+        assertThat(dtos).extracting("teamName").containsExactly("teamA", "teamA", null);
+        assertThat(page.getTotalElements()).isEqualTo(memberRepository.count());
+    }
+
+    @Test
+    public void batchFetch(){
+        //given
+        //team 100개, 팀마다 회원 1명
+        for (int i = 0; i < 100; i++) {
+            Team team = new Team("batchTeam" + i);
+            em.persist(team);
+            em.persist(new Member("batchMember" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+        em.getEntityManagerFactory().getCache().evictAll();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        //when
+        long before = statistics.getPrepareStatementCount();
+        List<Team> teams = em.createQuery("select t from Team t where t.name like 'batchTeam%'", Team.class)
+                .getResultList();
+        for (Team team : teams) {
+            team.getMembers().size();
+        }
+        long teamQueries = statistics.getPrepareStatementCount() - before;
+
+        em.clear();
+        before = statistics.getPrepareStatementCount();
+        List<Member> members = em.createQuery("select m from Member m where m.username like 'batchMember%'", Member.class)
+                .getResultList();
+        for (Member member : members) {
+            member.getTeam().getName();
+        }
+        long memberQueries = statistics.getPrepareStatementCount() - before;
+
+        //then
+        //N+1 이면 각각 101번
+        System.out.println("teamQueries = " + teamQueries + ", memberQueries = " + memberQueries);
+        assertThat(teams).hasSize(100);
+        assertThat(teamQueries).isLessThanOrEqualTo(3);
+        assertThat(memberQueries).isLessThanOrEqualTo(3);
     }
 
 }
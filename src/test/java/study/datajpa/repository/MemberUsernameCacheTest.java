@@ -0,0 +1,188 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//커밋된 뒤에 무효화되는지 봐야 하므로 @Transactional 을 붙이지 않는다
+@SpringBootTest
+@Import(SqlRecorder.class)
+class MemberUsernameCacheTest {
+
+    @Autowired
+    MemberUsernameCache usernameCache;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    AsyncMemberRepository asyncMemberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    SqlRecorder sqlRecorder;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'near%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'near%'").executeUpdate();
+        });
+        usernameCache.invalidateAll();
+    }
+
+    @Test
+    public void invalidateOnWrite(){
+        //given
+        Member member = memberRepository.save(new Member("near1", 10));
+        usernameCache.findByUsername("near1");
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(usernameCache.findOneByUsername("near1")).get()
+                    .extracting(MemberSnapshot::getAge).isEqualTo(10);
+            recording.assertStatementCount(0);
+        }
+
+        memberJpaRepository.memberUpdate(member.getId(), "near1", 20);
+        assertThat(usernameCache.findOneByUsername("near1").get().getAge()).isEqualTo(20);
+
+        //username 을 바꾸면 예전 username 으로는 더 이상 찾을 수 없다
+        memberJpaRepository.memberUpdate(member.getId(), "near2", 20);
+        assertThat(usernameCache.findByUsername("near1")).isEmpty();
+        assertThat(usernameCache.findByUsername("near2")).hasSize(1);
+
+        Team team = teamRepository.save(new Team("nearTeam"));
+        transactionTemplate.executeWithoutResult(status ->
+                em.find(Member.class, member.getId()).changeTeam(em.find(Team.class, team.getId())));
+        assertThat(usernameCache.findOneByUsername("near2").get().getTeamName()).isEqualTo("nearTeam");
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(20));
+        assertThat(usernameCache.findOneByUsername("near2").get().getAge()).isEqualTo(21);
+
+        //새 회원이 같은 username 으로 들어오면 목록에 보여야 한다
+        memberRepository.save(new Member("near2", 30));
+        assertThat(usernameCache.findByUsername("near2")).hasSize(2);
+
+        memberRepository.deleteById(member.getId());
+        assertThat(usernameCache.findByUsername("near2")).extracting(MemberSnapshot::getAge).containsExactly(30);
+    }
+
+    @Test
+    public void repositoryCachedLookups(){
+        //given
+        Team team = teamRepository.save(new Team("nearTeam"));
+        memberRepository.save(new Member("near5", 10, team));
+        memberRepository.save(new Member("near6", 20));
+        memberRepository.save(new Member("near6", 30));
+        memberRepository.findCachedByUsername("near5");
+        memberRepository.findCachedByUsername("near6");
+        memberRepository.findCachedByUsername("near7");
+
+        //when, then
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(memberRepository.findCachedMemberByUsername("near5").getTeamName()).isEqualTo("nearTeam");
+            assertThat(memberRepository.findCachedOptionalByUsername("near5")).get()
+                    .extracting(MemberSnapshot::getAge).isEqualTo(10);
+            assertThat(memberRepository.findCachedByUsername("near6")).extracting(MemberSnapshot::getAge)
+                    .containsExactlyInAnyOrder(20, 30);
+            assertThat(memberRepository.findCachedMemberByUsername("near7")).isNull();
+            assertThat(memberRepository.findCachedOptionalByUsername("near7")).isEmpty();
+            assertThatThrownBy(() -> memberRepository.findCachedOptionalByUsername("near6"))
+                    .isInstanceOf(IncorrectResultSizeDataAccessException.class);
+            recording.assertStatementCount(0);
+        }
+    }
+
+    @Test
+    public void asyncFindByUsernameUsesCache() throws Exception {
+        //given
+        Team team = teamRepository.save(new Team("nearTeam"));
+        memberRepository.save(new Member("near4", 10, team));
+
+        //when
+        List<MemberDto> members = asyncMemberRepository.findByUsername("near4").get(5, TimeUnit.SECONDS);
+
+        //then
+        assertThat(members).extracting(MemberDto::getTeamName).containsExactly("nearTeam");
+        //작업 스레드에서 읽은 값이 캐시에 들어가 있다
+        try (SqlRecording recording = sqlRecorder.start()) {
+            assertThat(usernameCache.findByUsername("near4")).hasSize(1);
+            recording.assertStatementCount(0);
+        }
+    }
+
+    @Test
+    public void neverStaleAfterCommit() throws Exception {
+        //given
+        Member member = memberRepository.save(new Member("near3", 0));
+        //writer 가 커밋하고 리턴한 마지막 age
+        AtomicInteger committed = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger stale = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        List<Future<?>> readers = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 4; i++) {
+            readers.add(pool.submit(() -> {
+                while (running.get()) {
+                    int expectedAtLeast = committed.get();
+                    int age = usernameCache.findOneByUsername("near3").get().getAge();
+                    reads.incrementAndGet();
+                    if (age < expectedAtLeast) {
+                        stale.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        Future<?> writer = pool.submit(() -> {
+            for (int i = 1; i <= 200; i++) {
+                memberJpaRepository.agePlus(member.getId(), 1);
+                committed.set(i);
+            }
+        });
+
+        writer.get();
+        running.set(false);
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        pool.shutdown();
+
+        //then
+        System.out.println("reads = " + reads.get());
+        assertThat(stale.get()).isZero();
+        assertThat(usernameCache.findOneByUsername("near3").get().getAge()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,89 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.queryplan.QueryPlanAnalyzer;
+import study.datajpa.support.SqlRecorder;
+import study.datajpa.support.SqlRecording;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//자주 쓰는 조회 쿼리마다 실제로 나간 SQL 을 QueryPlanAnalyzer 로 EXPLAIN 해서, 조건이 걸린 테이블을 인덱스 없이 풀 스캔하거나 카테시안 조인하지 않는지 본다
+@SpringBootTest
+@Transactional
+@Import(SqlRecorder.class)
+class QueryPlanTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    SqlRecorder sqlRecorder;
+    @Autowired
+    QueryPlanAnalyzer analyzer;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void setUp() {
+        Team team = new Team("planTeam");
+        em.persist(team);
+        for (int i = 0; i < 100; i++) {
+            em.persist(new Member("plan" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findByUsername(){
+        assertIndexed(() -> memberRepository.findByUsername("plan1"));
+    }
+
+    @Test
+    public void findByUsernameAndAgeGreaterThan(){
+        assertIndexed(() -> memberRepository.findByUsernameAndAgeGreaterThan("plan1", 0));
+    }
+
+    @Test
+    public void findByNames(){
+        assertIndexed(() -> memberRepository.findByNames(List.of("plan1", "plan2")));
+    }
+
+    @Test
+    public void findLockByUsername(){
+        assertIndexed(() -> memberRepository.findLockByUsername("plan1"));
+    }
+
+    @Test
+    public void teamNameSpecification(){
+        assertIndexed(() -> memberRepository.findAll(MemberSpec.teamName("planTeam")));
+    }
+
+    @Test
+    public void teamNameFilter(){
+        assertIndexed(() -> memberRepository.search(MemberFilter.create().teamName("planTeam")));
+    }
+
+    private void assertIndexed(Runnable query) {
+        List<SqlRecording.Statement> statements;
+        try (SqlRecording recording = sqlRecorder.start()) {
+            query.run();
+            statements = recording.statements();
+        }
+        assertThat(statements).isNotEmpty();
+
+        for (SqlRecording.Statement statement : statements) {
+            assertThat(analyzer.analyze("QueryPlanTest", statement.getSqlWithValues())).isEmpty();
+        }
+    }
+}
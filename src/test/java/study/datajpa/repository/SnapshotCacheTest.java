@@ -0,0 +1,114 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.MemberSnapshot;
+import study.datajpa.entity.Member;
+import study.datajpa.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTest {
+
+    AtomicInteger loads = new AtomicInteger();
+    SnapshotCache<Long, Optional<MemberSnapshot>> cache = new SnapshotCache<>("test", 100, Duration.ofMinutes(10),
+            10, Duration.ofMillis(50), (id, username) -> id, Optional::stream, false);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void missingKeysExpireQuicklyAndStaySeparate() throws Exception {
+        //given
+        cache.get(1L, this::load);
+
+        //when: 없는 id 를 missing 크기보다 훨씬 많이 조회
+        for (long id = 1000; id < 2000; id++) {
+            cache.get(id, this::load);
+        }
+
+        //then
+        int before = loads.get();
+        assertThat(cache.get(1L, this::load)).isPresent();
+        assertThat(loads.get()).isEqualTo(before);
+
+        cache.get(-1L, this::load);
+        cache.get(-1L, this::load);
+        assertThat(loads.get()).isEqualTo(before + 1);
+
+        Thread.sleep(100);
+        cache.get(-1L, this::load);
+        assertThat(loads.get()).isEqualTo(before + 2);
+    }
+
+    @Test
+    public void invalidateAfterCompletionOnce() {
+        //given
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        TransactionSynchronizationManager.initSynchronization();
+
+        //when
+        cache.onEntityChanged(new EntityChangedEvent(EntityChangedEvent.ChangeType.UPDATE, Member.class, 1L, new Member("m1")));
+        cache.onEntityChanged(new EntityChangedEvent(EntityChangedEvent.ChangeType.UPDATE, Member.class, 1L, new Member("m1")));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+        //then: 끝나기 전에는 그대로, 끝난 뒤에는 바뀐 id 만
+        assertThat(synchronizations).hasSize(1);
+        int before = loads.get();
+        cache.get(1L, this::load);
+        assertThat(loads.get()).isEqualTo(before);
+
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        assertThat(loads.get()).isEqualTo(before + 1);
+    }
+
+    //username 이 바뀌면 캐시를 훑지 않고 회원 id 로 기억해 둔 예전 username 을 지운다
+    @Test
+    public void renameEvictsPreviousKey() {
+        //given
+        AtomicInteger usernameLoads = new AtomicInteger();
+        SnapshotCache<String, List<MemberSnapshot>> byUsername = new SnapshotCache<>("test.username", 100, Duration.ofMinutes(10),
+                10, Duration.ofMinutes(10), (id, username) -> username, List::stream, true);
+        Function<String, List<MemberSnapshot>> loader = username -> {
+            usernameLoads.incrementAndGet();
+            return username.equals("m1") ? List.of(new MemberSnapshot(1L, "m1", 10, null, null)) : List.of();
+        };
+        byUsername.get("m1", loader);
+        byUsername.get("m2", loader);
+        byUsername.get("other", loader);
+
+        //when
+        Member renamed = new Member("m2");
+        byUsername.onEntityChanged(new EntityChangedEvent(EntityChangedEvent.ChangeType.UPDATE, Member.class, 1L, renamed));
+
+        //then: 예전(m1), 새(m2) username 만 다시 읽는다
+        int before = usernameLoads.get();
+        byUsername.get("other", loader);
+        assertThat(usernameLoads.get()).isEqualTo(before);
+        byUsername.get("m1", loader);
+        byUsername.get("m2", loader);
+        assertThat(usernameLoads.get()).isEqualTo(before + 2);
+    }
+
+    //1000 보다 작은 id 만 있다
+    private Optional<MemberSnapshot> load(Long id) {
+        loads.incrementAndGet();
+        return id > 0 && id < 1000 ? Optional.of(new MemberSnapshot(id, "m" + id, 10, null, null)) : Optional.empty();
+    }
+}
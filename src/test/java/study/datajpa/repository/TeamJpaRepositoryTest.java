@@ -0,0 +1,64 @@
+package study.datajpa.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.config.CacheConfig;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//2차 캐시는 커밋 이후에 채워지고 지워지므로 트랜잭션을 테스트 메서드 안에서 나눈다
+@SpringBootTest
+class TeamJpaRepositoryTest {
+
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    public void secondLevelCache(){
+        //given
+        Team team = transactionTemplate.execute(status -> teamJpaRepository.saveTeam(new Team("cachedTeam")));
+        emf.getCache().evict(Team.class);
+        CacheRegionStatistics statistics = emf.unwrap(SessionFactory.class)
+                .getStatistics()
+                .getDomainDataRegionStatistics(CacheConfig.TEAM_REGION);
+        long hits = statistics.getHitCount();
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> teamJpaRepository.findById(team.getId()));
+        transactionTemplate.executeWithoutResult(status -> teamJpaRepository.findById(team.getId()));
+
+        //then
+        assertThat(emf.getCache().contains(Team.class, team.getId())).isTrue();
+        assertThat(statistics.getHitCount() - hits).isEqualTo(1);
+    }
+
+    @Test
+    public void evictOnDelete(){
+        //given
+        Team team = transactionTemplate.execute(status -> teamJpaRepository.saveTeam(new Team("deletedTeam")));
+        transactionTemplate.executeWithoutResult(status ->
+                teamJpaRepository.findById(team.getId()).get().getMembers().size());
+        assertThat(emf.getCache().contains(Team.class, team.getId())).isTrue();
+
+        //when
+        transactionTemplate.executeWithoutResult(status ->
+                teamJpaRepository.delete(teamJpaRepository.findById(team.getId()).get()));
+
+        //then
+        assertThat(emf.getCache().contains(Team.class, team.getId())).isFalse();
+        assertThat(emf.unwrap(SessionFactory.class).getCache()
+                .containsCollection(CacheConfig.TEAM_MEMBERS_REGION, team.getId())).isFalse();
+        assertThat(transactionTemplate.execute(status -> teamJpaRepository.findById(team.getId()))).isEmpty();
+    }
+}
@@ -0,0 +1,176 @@
+package study.datajpa.startup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.datajpa.DataJpaApplication;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//기본 프로필과 fast-startup 프로필로 애플리케이션을 각각 새 JVM 에서 띄워서
+//프로세스 시작부터 첫 요청(GET /members) 응답까지의 시간과 ApplicationStartup 이 기록한 단계별 시간을 비교한다.
+//기본 프로필이 create 로 스키마를 다시 만들기 때문에 fast-startup 은 첫 회만 validate 하고 이후는 none 으로 시작한다.
+//H2 서버가 떠 있어야 하고, ./gradlew benchmark 로만 실행된다. 로그는 build/startup-benchmark
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    private static final List<String> PROFILES = List.of("default", "fast-startup");
+    private static final int ROUNDS = 3;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final int SLOWEST_BEANS = 10;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void startup() throws Exception {
+        Map<String, List<Startup>> results = new LinkedHashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String profile : PROFILES) {
+                results.computeIfAbsent(profile, key -> new ArrayList<>()).add(start(profile, round));
+            }
+        }
+
+        results.forEach((profile, rounds) -> {
+            System.out.println("== " + profile);
+            System.out.println("first request = " + median(rounds, startup -> startup.firstRequestMillis) + "ms "
+                    + rounds.stream().map(startup -> startup.firstRequestMillis + "ms").collect(Collectors.toList()));
+
+            //최상위 단계 (spring.boot.application.*, spring.context.refresh ...)
+            for (String phase : rounds.get(0).phases.keySet()) {
+                System.out.println("  " + phase + " = "
+                        + median(rounds, startup -> startup.phases.getOrDefault(phase, 0L)) + "ms");
+            }
+
+            //빈 생성 시간은 그 빈이 의존하는 빈을 만드는 시간을 포함한다
+            System.out.println("  slowest beans (last round)");
+            rounds.get(rounds.size() - 1).beans.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(SLOWEST_BEANS)
+                    .forEach(bean -> System.out.println("    " + bean.getKey() + " = " + bean.getValue() + "ms"));
+        });
+    }
+
+    private Startup start(String profile, int round) throws Exception {
+        int port = freePort();
+        Path log = Path.of("build", "startup-benchmark", profile + "-" + round + ".log");
+        Files.createDirectories(log.getParent());
+
+        ProcessBuilder builder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                DataJpaApplication.class.getName(),
+                "--spring.profiles.active=" + profile,
+                "--server.port=" + port,
+                "--decorator.datasource.p6spy.enable-logging=false",
+                "--logging.level.org.hibernate.SQL=info")
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            firstRequest(process, URI.create("http://localhost:" + port + "/members?size=1"), start, log);
+            long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/startup"))
+                            .POST(HttpRequest.BodyPublishers.noBody())
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode()).isEqualTo(200);
+            return timeline(firstRequestMillis, objectMapper.readTree(response.body()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    //포트가 열릴 때까지 다시 시도한다
+    private void firstRequest(Process process, URI uri, long start, Path log) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("application exited with " + process.exitValue() + ", see " + log);
+            }
+            if (System.nanoTime() - start > TIMEOUT.toNanos()) {
+                throw new IllegalStateException("application did not answer within " + TIMEOUT + ", see " + log);
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                assertThat(response.statusCode()).as("GET %s", uri).isEqualTo(200);
+                return;
+            } catch (ConnectException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    //{"timeline": {"events": [{"startupStep": {"name", "id", "parentId", "tags": [{"key", "value"}]}, "duration"}]}}
+    private Startup timeline(long firstRequestMillis, JsonNode body) {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        Map<String, Long> beans = new LinkedHashMap<>();
+        for (JsonNode event : body.path("timeline").path("events")) {
+            JsonNode step = event.path("startupStep");
+            long millis = Duration.parse(event.path("duration").asText()).toMillis();
+            String name = step.path("name").asText();
+            if (step.path("parentId").isNull() || step.path("parentId").isMissingNode()) {
+                phases.merge(name, millis, Long::sum);
+            }
+            if (name.equals("spring.beans.instantiate")) {
+                for (JsonNode tag : step.path("tags")) {
+                    if (tag.path("key").asText().equals("beanName")) {
+                        beans.merge(tag.path("value").asText(), millis, Long::sum);
+                    }
+                }
+            }
+        }
+        return new Startup(firstRequestMillis, phases, beans);
+    }
+
+    private static long median(List<Startup> rounds, ToLongFunction<Startup> value) {
+        long[] values = rounds.stream().mapToLong(value).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    static class Startup {
+        final long firstRequestMillis;
+        //최상위 단계 이름 -> ms (시작 순서)
+        final Map<String, Long> phases;
+        //빈 이름 -> 생성 ms
+        final Map<String, Long> beans;
+
+        Startup(long firstRequestMillis, Map<String, Long> phases, Map<String, Long> beans) {
+            this.firstRequestMillis = firstRequestMillis;
+            this.phases = phases;
+            this.beans = beans;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package study.datajpa.stats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.entity.TeamStats;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.TeamStatsRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋/롤백 뒤의 team_stats 를 봐야 하므로 @Transactional 을 붙이지 않는다.
+//변경할 때마다 TeamStatsConsistencyChecker 로 실제 집계와 비교한다
+@SpringBootTest
+class TeamStatsTest {
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+    @Autowired
+    TeamStatsUpdater teamStatsUpdater;
+    @Autowired
+    TeamStatsConsistencyChecker checker;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamRepository teamRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void rebuild() {
+        //다른 테스트가 JPQL 로 직접 지운 행이 남아 있을 수 있다
+        teamStatsUpdater.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'teamStats%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'teamStats%'").executeUpdate();
+        });
+        teamStatsUpdater.rebuild();
+    }
+
+    @Test
+    public void incremental(){
+        //given
+        Team teamA = teamRepository.save(new Team("teamStatsA"));
+        Team teamB = teamRepository.save(new Team("teamStatsB"));
+        assertThat(stats(teamA).getMemberCount()).isEqualTo(0);
+        assertThat(stats(teamA).getMinAge()).isNull();
+
+        Member member1 = memberRepository.save(new Member("teamStats1", 10, teamA));
+        Member member2 = memberRepository.save(new Member("teamStats2", 20, teamA));
+        Member member3 = memberRepository.save(new Member("teamStats3", 30, teamA));
+
+        TeamStats stats = stats(teamA);
+        assertThat(stats.getMemberCount()).isEqualTo(3);
+        assertThat(stats.getAverageAge()).isEqualTo(20.0);
+        assertThat(stats.getMinAge()).isEqualTo(10);
+        assertThat(stats.getMaxAge()).isEqualTo(30);
+        assertThat(checker.check()).isEmpty();
+
+        //when 최솟값이 빠지면 그 팀만 다시 집계한다
+        memberJpaRepository.memberUpdate(member1.getId(), "teamStats1", 25);
+        assertThat(stats(teamA).getMinAge()).isEqualTo(20);
+        assertThat(checker.check()).isEmpty();
+
+        memberRepository.deleteById(member2.getId());
+        assertThat(stats(teamA).getMemberCount()).isEqualTo(2);
+        assertThat(stats(teamA).getMinAge()).isEqualTo(25);
+        assertThat(checker.check()).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status ->
+                em.find(Member.class, member3.getId()).changeTeam(em.find(Team.class, teamB.getId())));
+
+        //then
+        assertThat(stats(teamA).getMemberCount()).isEqualTo(1);
+        assertThat(stats(teamA).getMaxAge()).isEqualTo(25);
+        assertThat(stats(teamB).getMemberCount()).isEqualTo(1);
+        assertThat(stats(teamB).getAverageAge()).isEqualTo(30.0);
+        assertThat(checker.check()).isEmpty();
+    }
+
+    @Test
+    public void rollback(){
+        //given
+        Team team = teamRepository.save(new Team("teamStats"));
+        memberRepository.save(new Member("teamStats1", 10, team));
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("teamStats2", 50, em.find(Team.class, team.getId())));
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertThat(stats(team).getMemberCount()).isEqualTo(1);
+        assertThat(stats(team).getMaxAge()).isEqualTo(10);
+        assertThat(checker.check()).isEmpty();
+    }
+
+    @Test
+    public void bulkAgePlus(){
+        //given
+        Team team = teamRepository.save(new Team("teamStats"));
+        memberRepository.save(new Member("teamStats1", 10, team));
+        memberRepository.save(new Member("teamStats2", 40, team));
+
+        //when 벌크 연산은 커밋 뒤에 다시 집계한다
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(40));
+
+        //then
+        assertThat(stats(team).getMaxAge()).isEqualTo(41);
+        assertThat(stats(team).getAverageAge()).isEqualTo(25.5);
+        assertThat(checker.check()).isEmpty();
+    }
+
+    @Test
+    public void checkerFindsDrift(){
+        //given
+        Team team = teamRepository.save(new Team("teamStats"));
+        memberRepository.save(new Member("teamStats1", 10, team));
+
+        //when 엔티티 이벤트도 BulkUpdatedEvent 도 없이 지운다
+        transactionTemplate.executeWithoutResult(status ->
+                em.createNativeQuery("delete from member where username = 'teamStats1'").executeUpdate());
+
+        //then
+        assertThat(checker.check())
+                .extracting(TeamStatsConsistencyChecker.Mismatch::getTeamId)
+                .containsExactly(team.getId());
+
+        teamStatsUpdater.rebuild();
+        assertThat(checker.check()).isEmpty();
+        assertThat(stats(team).getMemberCount()).isEqualTo(0);
+    }
+
+    private TeamStats stats(Team team) {
+        return teamStatsRepository.findById(team.getId()).orElseThrow();
+    }
+}
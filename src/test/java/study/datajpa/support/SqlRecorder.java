@@ -0,0 +1,102 @@
+package study.datajpa.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//테스트에서 실행된 SQL 을 모아서 개수를 검증하고 N+1 을 찾는다. @Import(SqlRecorder.class) 로 붙여서 쓴다
+//
+//  try (SqlRecording recording = sqlRecorder.start()) {
+//      ...
+//      recording.assertSelectCount(1);
+//      recording.assertNoNPlusOne();
+//  }
+//
+//p6spy 리스너로 SQL 을 받고, Hibernate 의 프록시/컬렉션 초기화 이벤트로 그 SQL 을 일으킨 지연 로딩 연관관계를 함께 기록한다.
+//기록은 start() 를 부른 스레드에서 실행된 SQL 만 모은다
+public class SqlRecorder extends SimpleJdbcEventListener implements LoadEventListener, InitializeCollectionEventListener {
+
+    private final ThreadLocal<SqlRecording> recording = new ThreadLocal<>();
+    //바로 다음 SQL 을 일으킨 지연 로딩 (Member.team, Team.members)
+    private final ThreadLocal<String> pendingCause = new ThreadLocal<>();
+    //엔티티 이름 -> 그 엔티티를 가리키는 to-one 연관관계들 (study.datajpa.entity.Team -> Member.team)
+    private final Map<String, List<String>> toOneAssociations = new HashMap<>();
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @PostConstruct
+    public void register() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            String[] names = persister.getPropertyNames();
+            Type[] types = persister.getPropertyTypes();
+            for (int i = 0; i < names.length; i++) {
+                if (types[i].isEntityType()) {
+                    toOneAssociations.computeIfAbsent(((EntityType) types[i]).getAssociatedEntityName(), key -> new ArrayList<>())
+                            .add(ClassUtils.getShortName(persister.getEntityName()) + "." + names[i]);
+                }
+            }
+        }
+
+        //기본 리스너가 SQL 을 실행하기 전에 원인을 남겨야 하므로 앞에 붙인다
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.prependListeners(EventType.LOAD, this);
+        registry.prependListeners(EventType.INIT_COLLECTION, this);
+    }
+
+    public SqlRecording start() {
+        SqlRecording started = new SqlRecording(() -> recording.remove());
+        recording.set(started);
+        pendingCause.remove();
+        return started;
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SqlRecording current = recording.get();
+        String cause = pendingCause.get();
+        pendingCause.remove();
+        if (current != null) {
+            current.add(statementInformation.getSql(), statementInformation.getSqlWithValues(), cause);
+        }
+    }
+
+    //프록시 초기화(member.getTeam().getName())는 IMMEDIATE_LOAD 로 들어온다
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        if (loadType == LoadEventListener.IMMEDIATE_LOAD && recording.get() != null) {
+            List<String> associations = toOneAssociations.get(event.getEntityClassName());
+            pendingCause.set(associations != null
+                    ? String.join(" or ", associations)
+                    : ClassUtils.getShortName(event.getEntityClassName()) + " proxy");
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) throws HibernateException {
+        if (recording.get() != null && event.getCollection().getRole() != null) {
+            pendingCause.set(ClassUtils.getShortName(event.getCollection().getRole()));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package study.datajpa.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Team 의 batch size 를 1 로 내려서 member.getTeam() 이 N+1 이 되게 한다
+@SpringBootTest(properties = "datajpa.batch-fetch.sizes[study.datajpa.entity.Team]=1")
+@Transactional
+@Import(SqlRecorder.class)
+class SqlRecorderTest {
+
+    @Autowired
+    SqlRecorder sqlRecorder;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("nplusTeam" + i);
+            em.persist(team);
+            em.persist(new Member("nplus" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    @Test
+    public void detectNPlusOne(){
+        try (SqlRecording recording = sqlRecorder.start()) {
+            //when
+            List<Member> members = em.createQuery("select m from Member m where m.username like 'nplus%'", Member.class)
+                    .getResultList();
+            for (Member member : members) {
+                member.getTeam().getName();
+            }
+
+            //then
+            recording.assertSelectCount(4);
+            List<SqlRecording.NPlusOne> suspects = recording.nPlusOneSuspects();
+            assertThat(suspects).hasSize(1);
+            assertThat(suspects.get(0).getExecutions()).isEqualTo(3);
+            assertThat(suspects.get(0).getAssociations()).containsExactly("Member.team");
+            assertThatThrownBy(recording::assertNoNPlusOne)
+                    .isInstanceOf(AssertionError.class)
+                    .hasMessageContaining("Member.team");
+        }
+    }
+
+    @Test
+    public void fetchJoinIsSingleSelect(){
+        try (SqlRecording recording = sqlRecorder.start()) {
+            //when
+            List<Member> members = em.createQuery("select m from Member m join fetch m.team where m.username like 'nplus%'", Member.class)
+                    .getResultList();
+            for (Member member : members) {
+                member.getTeam().getName();
+            }
+
+            //then
+            recording.assertSelectCount(1)
+                    .assertNoNPlusOne();
+        }
+    }
+
+    @Test
+    public void onlyInsideRecording(){
+        //given
+        SqlRecording recording = sqlRecorder.start();
+        em.createQuery("select count(m) from Member m").getSingleResult();
+        recording.close();
+
+        //when
+        em.createQuery("select count(t) from Team t").getSingleResult();
+
+        //then
+        recording.assertStatementCount(1);
+    }
+}
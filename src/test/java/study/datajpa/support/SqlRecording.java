@@ -0,0 +1,159 @@
+package study.datajpa.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//SqlRecorder.start() 부터 close() 까지 실행된 SQL
+public class SqlRecording implements AutoCloseable {
+
+    private final Runnable onClose;
+    private final List<Statement> statements = new ArrayList<>();
+
+    SqlRecording(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
+    void add(String sql, String sqlWithValues, String cause) {
+        statements.add(new Statement(sql, sqlWithValues, cause));
+    }
+
+    public List<Statement> statements() {
+        return Collections.unmodifiableList(statements);
+    }
+
+    public long selectCount() {
+        return statements.stream().filter(Statement::isSelect).count();
+    }
+
+    public SqlRecording assertStatementCount(int expected) {
+        if (statements.size() != expected) {
+            throw new AssertionError("expected " + expected + " statements but was " + statements.size() + describe(statements));
+        }
+        return this;
+    }
+
+    public SqlRecording assertSelectCount(int expected) {
+        List<Statement> selects = statements.stream().filter(Statement::isSelect).collect(Collectors.toList());
+        if (selects.size() != expected) {
+            throw new AssertionError("expected " + expected + " selects but was " + selects.size() + describe(selects));
+        }
+        return this;
+    }
+
+    //같은 select 가 바인드 값만 바뀌어 2번 이상 나가면 N+1 로 본다
+    public List<NPlusOne> nPlusOneSuspects() {
+        return nPlusOneSuspects(2);
+    }
+
+    public List<NPlusOne> nPlusOneSuspects(int threshold) {
+        Map<String, List<Statement>> bySql = new LinkedHashMap<>();
+        for (Statement statement : statements) {
+            if (statement.isSelect()) {
+                bySql.computeIfAbsent(statement.sql, sql -> new ArrayList<>()).add(statement);
+            }
+        }
+
+        List<NPlusOne> suspects = new ArrayList<>();
+        bySql.forEach((sql, executions) -> {
+            Set<String> distinctValues = executions.stream()
+                    .map(statement -> statement.sqlWithValues)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (distinctValues.size() >= threshold) {
+                Set<String> causes = executions.stream()
+                        .map(statement -> statement.cause)
+                        .filter(cause -> cause != null)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                suspects.add(new NPlusOne(sql, executions.size(), causes));
+            }
+        });
+        return suspects;
+    }
+
+    public SqlRecording assertNoNPlusOne() {
+        List<NPlusOne> suspects = nPlusOneSuspects();
+        if (!suspects.isEmpty()) {
+            throw new AssertionError("N+1 detected:\n" + suspects.stream()
+                    .map(NPlusOne::toString)
+                    .collect(Collectors.joining("\n")));
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+
+    private static String describe(List<Statement> statements) {
+        return statements.stream()
+                .map(statement -> "\n  " + statement.sqlWithValues)
+                .collect(Collectors.joining());
+    }
+
+    public static class Statement {
+
+        private final String sql;
+        private final String sqlWithValues;
+        private final String cause;
+
+        Statement(String sql, String sqlWithValues, String cause) {
+            this.sql = sql;
+            this.sqlWithValues = sqlWithValues;
+            this.cause = cause;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getSqlWithValues() {
+            return sqlWithValues;
+        }
+
+        //지연 로딩으로 나간 SQL 이면 그 연관관계 (Member.team), 아니면 null
+        public String getCause() {
+            return cause;
+        }
+
+        boolean isSelect() {
+            return sql.trim().toLowerCase().startsWith("select");
+        }
+    }
+
+    public static class NPlusOne {
+
+        private final String sql;
+        private final int executions;
+        private final Set<String> associations;
+
+        NPlusOne(String sql, int executions, Set<String> associations) {
+            this.sql = sql;
+            this.executions = executions;
+            this.associations = associations;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getExecutions() {
+            return executions;
+        }
+
+        public Set<String> getAssociations() {
+            return associations;
+        }
+
+        @Override
+        public String toString() {
+            return executions + " x [" + sql.replaceAll("\\s+", " ").trim() + "]"
+                    + (associations.isEmpty() ? "" : " caused by lazy loading of " + String.join(", ", associations));
+        }
+    }
+}